@@ -0,0 +1,310 @@
+/*
+ * Filename:     ConcurrentValidationCheck.java
+ * Created:      17 OCT 2026
+ * Description:  Stress check that parallel validations report exactly as serial ones
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Stress check for re-entrant validation: each scene is first validated serially,
+ * then validated repeatedly by a pool of threads in shuffled order, and every
+ * parallel report must be byte-identical to the serial report for that scene.
+ * Shared state between simultaneous validations shows up as interleaved or
+ * clobbered reports.  Temporary files are unique to each validation by design, so
+ * only the random part of their names is masked, for example when a parser error
+ * quotes an X3D excerpt file; all other report content must match exactly.
+ *
+ * Built-in scenes cover plain X3D, malformed numeric values (reported through
+ * {@link Log4JListener}), a scene that is not well-formed, and an X3DOM page with
+ * two X3D islands (excerpt files and additional-island reports).  Further .x3d,
+ * .html and .xhtml files or directories can be given as arguments.
+ *
+ * Invoked by Ant target verify.concurrent.validation, for example:
+ * <pre>  ant verify.concurrent.validation -Dverify.concurrent.validation.threads=16</pre>
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class ConcurrentValidationCheck
+{
+    /** default number of validation threads */
+    public static final int DEFAULT_THREADS = 8;
+
+    /** default number of parallel validations of each scene */
+    public static final int DEFAULT_ROUNDS = 4;
+
+    private static final String[][] BUILT_IN_SCENES = {
+        { "PlainScene.x3d",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<!DOCTYPE X3D PUBLIC \"ISO//Web3D//DTD X3D 3.3//EN\" \"http://www.web3d.org/specifications/x3d-3.3.dtd\">\n"
+          + "<X3D profile='Immersive' version='3.3' xmlns:xsd='http://www.w3.org/2001/XMLSchema-instance' xsd:noNamespaceSchemaLocation='http://www.web3d.org/specifications/x3d-3.3.xsd'>\n"
+          + "  <head><meta name='title' content='PlainScene.x3d'/></head>\n"
+          + "  <Scene>\n"
+          + "    <WorldInfo title='PlainScene.x3d'/>\n"
+          + "    <Transform DEF='Mover' translation='0 1 0'>\n"
+          + "      <Shape DEF='BoxShape'><Box size='1 2 3'/><Appearance><Material diffuseColor='1 0 0'/></Appearance></Shape>\n"
+          + "    </Transform>\n"
+          + "    <Transform translation='2 0 0'><Shape USE='BoxShape'/></Transform>\n"
+          + "    <TimeSensor DEF='Clock' cycleInterval='4' loop='true'/>\n"
+          + "    <PositionInterpolator DEF='Path' key='0 1' keyValue='0 0 0 0 1 0'/>\n"
+          + "    <ROUTE fromNode='Clock' fromField='fraction_changed' toNode='Path' toField='set_fraction'/>\n"
+          + "    <ROUTE fromNode='Path' fromField='value_changed' toNode='Mover' toField='set_translation'/>\n"
+          + "  </Scene>\n"
+          + "</X3D>\n" },
+        { "MalformedNumbers.x3d",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<!DOCTYPE X3D PUBLIC \"ISO//Web3D//DTD X3D 4.0//EN\" \"https://www.web3d.org/specifications/x3d-4.0.dtd\">\n"
+          + "<X3D profile='Interchange' version='4.0'>\n"
+          + "  <Scene>\n"
+          + "    <Transform translation='0 1. 007' scale='1 1 1.e'>\n"
+          + "      <Shape><Sphere radius='.5'/></Shape>\n"
+          + "    </Transform>\n"
+          + "    <Viewpoint position='0 -00 10' description='leading zeroes'/>\n"
+          + "  </Scene>\n"
+          + "</X3D>\n" },
+        { "NotWellFormed.x3d",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<X3D profile='Immersive' version='3.3'>\n"
+          + "  <Scene>\n"
+          + "    <Transform><Shape><Box/></Transform>\n"
+          + "  </Scene>\n"
+          + "</X3D>\n" },
+        { "X3domPage.html",
+            "<!DOCTYPE html>\n"
+          + "<html>\n"
+          + "  <head>\n"
+          + "    <title>X3domPage.html</title>\n"
+          + "    <script type='text/javascript' src='https://www.x3dom.org/download/x3dom.js'></script>\n"
+          + "    <link rel='stylesheet' type='text/css' href='https://www.x3dom.org/download/x3dom.css'/>\n"
+          + "  </head>\n"
+          + "  <body>\n"
+          + "    <X3D profile='Immersive' version='3.3' width='400px' height='300px'>\n"
+          + "      <Scene><Shape><Box size='1 1 1'/></Shape></Scene>\n"
+          + "    </X3D>\n"
+          + "    <X3D profile='Immersive' version='4.0' width='400px' height='300px'>\n"
+          + "      <Scene><Transform translation='0 01 0'><Shape><Cone/></Shape></Transform></Scene>\n"
+          + "    </X3D>\n"
+          + "  </body>\n"
+          + "</html>\n" }
+    };
+
+    private ConcurrentValidationCheck()
+    {
+        // command-line check only, no instances
+    }
+
+    /**
+     * Validate every scene in parallel and compare with its serial report.
+     *
+     * @param sceneFiles scenes to validate
+     * @param threadCount number of validation threads
+     * @param rounds number of parallel validations of each scene
+     * @param mismatchLog stream receiving a description of each differing report
+     * @return number of parallel reports differing from serial report
+     * @throws InterruptedException if interrupted while waiting for validations
+     * @throws ExecutionException if a validation throws unexpectedly
+     */
+    public static int check(List<File> sceneFiles, int threadCount, int rounds, PrintStream mismatchLog) throws InterruptedException, ExecutionException
+    {
+        // serial reports also come from a pool thread, so that stack traces of internal errors match
+        Map<File, String> serialReports = new LinkedHashMap<>();
+        ExecutorService serialExecutorService = Executors.newSingleThreadExecutor();
+        try {
+            for (File sceneFile : sceneFiles)
+            {
+                serialReports.put(sceneFile, serialExecutorService.submit(newValidation(sceneFile)).get());
+            }
+        } finally {
+            serialExecutorService.shutdownNow();
+        }
+
+        List<File> parallelOrder = new ArrayList<>();
+        for (int round = 0; round < rounds; round++)
+        {
+            parallelOrder.addAll(sceneFiles);
+        }
+        Collections.shuffle(parallelOrder, new Random(rounds)); // repeatable order, different scenes overlap
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<String>> parallelReports = new ArrayList<>();
+            for (File sceneFile : parallelOrder)
+            {
+                parallelReports.add(executorService.submit(newValidation(sceneFile)));
+            }
+            int mismatchCount = 0;
+            for (int i = 0; i < parallelOrder.size(); i++)
+            {
+                File   sceneFile      = parallelOrder.get(i);
+                String serialReport   = serialReports.get(sceneFile);
+                String parallelReport = parallelReports.get(i).get();
+                if (!parallelReport.equals(serialReport))
+                {
+                    mismatchCount++;
+                    reportDifference(mismatchLog, sceneFile, serialReport, parallelReport);
+                }
+            }
+            return mismatchCount;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * @param sceneFile scene to validate
+     * @return validation whose report has the random part of temporary file names masked,
+     * these names start with the scene name, see {@link ValidationContext#createTemporaryFile(String, String)}
+     */
+    private static Callable<String> newValidation(File sceneFile)
+    {
+        String sceneName = sceneFile.getName().substring(0, sceneFile.getName().lastIndexOf('.'));
+        Pattern temporaryFilePattern = Pattern.compile("(" + Pattern.quote(sceneName) + "[\\w.-]*?)\\d+(\\.x3d)");
+        return () -> temporaryFilePattern.matcher(Validator.validate(sceneFile)).replaceAll("$1#$2");
+    }
+
+    private static void reportDifference(PrintStream mismatchLog, File sceneFile, String serialReport, String parallelReport)
+    {
+        int position = 0;
+        while ((position < serialReport.length()) && (position < parallelReport.length())
+                && (serialReport.charAt(position) == parallelReport.charAt(position)))
+        {
+            position++;
+        }
+        mismatchLog.println("*** DIFFERS " + sceneFile.getName() + " at character " + position + " of " + serialReport.length() + ":");
+        mismatchLog.println("    serial:   " + excerpt(serialReport,   position));
+        mismatchLog.println("    parallel: " + excerpt(parallelReport, position));
+    }
+
+    private static String excerpt(String report, int position)
+    {
+        return report.substring(position, Math.min(report.length(), position + 80)).replace("\n", "\\n");
+    }
+
+    private static void addSceneFiles(File file, List<File> sceneFiles)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                addSceneFiles(child, sceneFiles);
+            }
+        }
+        else if (file.getName().endsWith(".x3d") || file.getName().endsWith(".html") || file.getName().endsWith(".xhtml"))
+        {
+            sceneFiles.add(file);
+        }
+    }
+
+    /**
+     * @param args number of threads, number of rounds, then optional scene files or directories
+     */
+    public static void main(String[] args)
+    {
+        int threadCount = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+        int rounds      = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+        List<File> sceneFiles = new ArrayList<>();
+        PrintStream console      = System.out;
+        PrintStream errorConsole = System.err;
+        File sceneDirectory = null;
+        int mismatchCount;
+        try {
+            sceneDirectory = Files.createTempDirectory("ConcurrentValidationCheck").toFile();
+            for (String[] builtInScene : BUILT_IN_SCENES)
+            {
+                File sceneFile = new File(sceneDirectory, builtInScene[0]);
+                Files.write(sceneFile.toPath(), builtInScene[1].getBytes(StandardCharsets.UTF_8));
+                sceneFiles.add(sceneFile);
+            }
+            for (int i = 2; i < args.length; i++)
+            {
+                addSceneFiles(new File(args[i]), sceneFiles);
+            }
+            console.println("ConcurrentValidationCheck: " + sceneFiles.size() + " scenes, " + threadCount + " threads, " + rounds + " rounds...");
+            // Validator logs progress of every check and stack traces of internal errors to console, which would drown the result
+            PrintStream discardingStream = new PrintStream(new OutputStream()
+            {
+                @Override
+                public void write(int b)
+                {
+                }
+            });
+            System.setOut(discardingStream);
+            System.setErr(discardingStream);
+            mismatchCount = check(sceneFiles, threadCount, rounds, console);
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            System.setOut(console);
+            System.setErr(errorConsole);
+            System.out.println("*** ConcurrentValidationCheck failed: " + e);
+            System.exit(1);
+            return;
+        } finally {
+            System.setOut(console);
+            System.setErr(errorConsole);
+            if (sceneDirectory != null)
+            {
+                for (String[] builtInScene : BUILT_IN_SCENES)
+                {
+                    new File(sceneDirectory, builtInScene[0]).delete();
+                }
+                sceneDirectory.delete();
+            }
+        }
+        System.out.println("ConcurrentValidationCheck: " + (sceneFiles.size() * rounds) + " parallel validations, " + mismatchCount + " differ from serial reports");
+        if (mismatchCount > 0)
+        {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Filename:     DiscardingContentHandler.java
+ * Created:      17 OCT 2026
+ * Description:  Output sink for conversion checks whose result is never used
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import javax.xml.transform.sax.SAXResult;
+import org.xml.sax.Attributes;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Transformation result that counts output events and characters but never
+ * serializes them, neither to disk nor to heap.  Used by conversion checks such
+ * as X3dToVrml97.xslt and X3dTidy.xslt where only the error listener and
+ * xsl:message output matter.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class DiscardingContentHandler extends DefaultHandler implements LexicalHandler
+{
+    private long eventCount     = 0;
+    private long characterCount = 0;
+
+    /**
+     * @return new SAXResult sending all transformation output to a discarding handler
+     */
+    public SAXResult newResult()
+    {
+        SAXResult saxResult = new SAXResult(this);
+        saxResult.setLexicalHandler(this);
+        return saxResult;
+    }
+
+    /**
+     * @return number of output events received, including elements, text, comments and processing instructions
+     */
+    public long getEventCount()
+    {
+        return eventCount;
+    }
+
+    /**
+     * @return number of output characters received, excluding markup
+     */
+    public long getCharacterCount()
+    {
+        return characterCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "discarded " + eventCount + " output events, " + characterCount + " characters";
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes)
+    {
+        eventCount++;
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName)
+    {
+        eventCount++;
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length)
+    {
+        eventCount++;
+        characterCount += length;
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length)
+    {
+        eventCount++;
+        characterCount += length;
+    }
+
+    @Override
+    public void processingInstruction(String target, String data)
+    {
+        eventCount++;
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length)
+    {
+        eventCount++;
+        characterCount += length;
+    }
+
+    @Override
+    public void startDTD(String name, String publicId, String systemId)
+    {
+        eventCount++;
+    }
+
+    @Override
+    public void endDTD()
+    {
+    }
+
+    @Override
+    public void startEntity(String name)
+    {
+    }
+
+    @Override
+    public void endEntity(String name)
+    {
+    }
+
+    @Override
+    public void startCDATA()
+    {
+    }
+
+    @Override
+    public void endCDATA()
+    {
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Filename:     HtmlHostPageScanner.java
+ * Created:      17 OCT 2026
+ * Description:  Single-pass scan of an HTML host page for X3D player markers, script and link references, and X3D scene islands
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Scans a page once, front to back, recording everything the validator needs to know
+ * about an HTML page hosting X3D content: whether it is HTML at all, which X3D player
+ * (X3DOM, X_ITE or Cobweb) it uses, its script and link elements, and each
+ * <code>&lt;X3D&gt;</code> scene island it contains.  Only those small excerpts are
+ * copied, rather than lower-case and substituted copies of the whole page.
+ *
+ * Detection follows the validator's original text checks: "&lt;html" or "&lt;HTML"
+ * marks an HTML page, and each island runs from "&lt;x3d " through the next
+ * "&lt;/x3d&gt;", ignoring case.  A page may hold any number of islands.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class HtmlHostPageScanner
+{
+    /** X3D specification references using http, which web3d.org redirects and SAX does not follow */
+    public static final String HTTP_SPECIFICATION_PREFIX  = "http://www.web3d.org/specifications/x3d-";
+    /** corresponding https references */
+    public static final String HTTPS_SPECIFICATION_PREFIX = "https://www.web3d.org/specifications/x3d-";
+
+    private static final String SCHEMA_LOCATION_ATTRIBUTE = "xsd:noNamespaceSchemaLocation=";
+
+    // marker indices into firstIndex[]
+    private static final int HTML_LOWER        =  0;
+    private static final int HTML_UPPER        =  1;
+    private static final int X3DOM             =  2;
+    private static final int X3DOM_JS          =  3;
+    private static final int X3DOM_FULL_JS     =  4;
+    private static final int X3DOM_CSS         =  5;
+    private static final int X_ITE             =  6;
+    private static final int COBWEB            =  7;
+    private static final int X3DCANVAS         =  8;
+    private static final int HTTP_SPEC         =  9;
+    private static final int SCHEMA_LOCATION   = 10;
+    private static final int DTD_SUFFIX        = 11;
+    private static final int XSD_SUFFIX        = 12;
+
+    /** literal markers, found case-sensitively as in original String.contains() checks */
+    private static final String[] MARKERS = {
+        "<html", "<HTML", "x3dom.", "x3dom.js", "x3dom-full.js", "x3dom.css", "x_ite.", "cobweb.",
+        "<X3DCanvas ", HTTP_SPECIFICATION_PREFIX, SCHEMA_LOCATION_ATTRIBUTE, ".dtd", ".xsd"
+    };
+
+    private final String        pageText;
+    private final int[]         firstIndex = new int[MARKERS.length];
+    private boolean             foundX3dCanvasIgnoreCase = false;
+    private final List<String>  x3dIslands    = new ArrayList<>();
+    private boolean             lastIslandUnclosed = false;
+    private final List<String>  scriptElements = new ArrayList<>();
+    private final List<String>  linkElements   = new ArrayList<>();
+
+    /**
+     * Scan page text.
+     *
+     * @param pageText complete page or scene text
+     */
+    public HtmlHostPageScanner(String pageText)
+    {
+        this.pageText = pageText;
+        Arrays.fill(firstIndex, -1);
+        scan();
+    }
+
+    private void scan()
+    {
+        int length = pageText.length();
+        int islandStart = -1;
+        for (int i = 0; i < length; i++)
+        {
+            char c = pageText.charAt(i);
+            for (int m = 0; m < MARKERS.length; m++)
+            {
+                if ((firstIndex[m] < 0) && (MARKERS[m].charAt(0) == c) && pageText.startsWith(MARKERS[m], i))
+                {
+                    firstIndex[m] = i;
+                }
+            }
+            if (c != '<')
+            {
+                continue;
+            }
+            if (!foundX3dCanvasIgnoreCase && pageText.regionMatches(true, i, "<x3dcanvas ", 0, 11))
+            {
+                foundX3dCanvasIgnoreCase = true;
+            }
+            if ((islandStart < 0) && pageText.regionMatches(true, i, "<x3d ", 0, 5))
+            {
+                islandStart = i;
+            }
+            else if ((islandStart >= 0) && pageText.regionMatches(true, i, "</x3d>", 0, 6))
+            {
+                x3dIslands.add(pageText.substring(islandStart, i + 6));
+                islandStart = -1;
+            }
+            else if (pageText.regionMatches(true, i, "<script", 0, 7))
+            {
+                scriptElements.add(excerptElement(i, "</script>"));
+            }
+            else if (pageText.regionMatches(true, i, "<link", 0, 5))
+            {
+                linkElements.add(excerptElement(i, null));
+            }
+        }
+        if (islandStart >= 0)
+        {
+            x3dIslands.add(pageText.substring(islandStart));
+            lastIslandUnclosed = true;
+        }
+    }
+
+    /**
+     * Copy start tag beginning at index, and for a script element that is not self-closing
+     * also any whitespace and the end tag immediately following it.
+     */
+    private String excerptElement(int start, String endTag)
+    {
+        int tagEnd = pageText.indexOf('>', start);
+        if (tagEnd < 0)
+        {
+            return pageText.substring(start);
+        }
+        int end = tagEnd + 1;
+        if ((endTag != null) && (pageText.charAt(tagEnd - 1) != '/'))
+        {
+            int next = end;
+            while ((next < pageText.length()) && Character.isWhitespace(pageText.charAt(next)))
+            {
+                next++;
+            }
+            if (pageText.regionMatches(true, next, endTag, 0, endTag.length()))
+            {
+                end = next + endTag.length();
+            }
+        }
+        return pageText.substring(start, end);
+    }
+
+    /**
+     * @return whether page contains &lt;html or &lt;HTML
+     */
+    public boolean isHtml()
+    {
+        return (firstIndex[HTML_LOWER] >= 0) || (firstIndex[HTML_UPPER] >= 0);
+    }
+
+    /**
+     * @return whether page refers to X3DOM
+     */
+    public boolean isX3dom()
+    {
+        return firstIndex[X3DOM] >= 0;
+    }
+
+    /**
+     * @return whether page refers to X_ITE or contains an X3DCanvas element
+     */
+    public boolean isX_ITE()
+    {
+        return (firstIndex[X_ITE] >= 0) || foundX3dCanvasIgnoreCase;
+    }
+
+    /**
+     * @return whether page refers to Cobweb, predecessor of X_ITE
+     */
+    public boolean isCobweb()
+    {
+        return firstIndex[COBWEB] >= 0;
+    }
+
+    /**
+     * @return whether page contains a local x3dom.js reference
+     */
+    public boolean hasX3domJs()
+    {
+        return firstIndex[X3DOM_JS] >= 0;
+    }
+
+    /**
+     * @return whether page contains a local x3dom-full.js reference
+     */
+    public boolean hasX3domFullJs()
+    {
+        return firstIndex[X3DOM_FULL_JS] >= 0;
+    }
+
+    /**
+     * @return whether page contains a local x3dom.css reference
+     */
+    public boolean hasX3domCss()
+    {
+        return firstIndex[X3DOM_CSS] >= 0;
+    }
+
+    /**
+     * @return first X3DCanvas start tag, or null if none
+     */
+    public String getX3dCanvasTag()
+    {
+        int start = firstIndex[X3DCANVAS];
+        if (start < 0)
+        {
+            return null;
+        }
+        int end = pageText.indexOf('>', start);
+        return (end < 0) ? pageText.substring(start) : pageText.substring(start, end + 1);
+    }
+
+    /**
+     * @return whether page refers to X3D DTD or schema using http rather than https
+     */
+    public boolean hasHttpSpecificationReference()
+    {
+        return firstIndex[HTTP_SPEC] >= 0;
+    }
+
+    /**
+     * @return first http DTD reference through .dtd, or null if none can be excerpted
+     */
+    public String getHttpDtdReference()
+    {
+        return excerpt(firstIndex[HTTP_SPEC], firstIndex[DTD_SUFFIX]);
+    }
+
+    /**
+     * @return schema location value through .xsd, or null if none can be excerpted
+     */
+    public String getSchemaLocationReference()
+    {
+        int start = firstIndex[SCHEMA_LOCATION];
+        if (start < 0)
+        {
+            return null;
+        }
+        return excerpt(start + SCHEMA_LOCATION_ATTRIBUTE.length() + 1, firstIndex[XSD_SUFFIX]); // skip opening quote
+    }
+
+    private String excerpt(int start, int suffixStart)
+    {
+        if ((start < 0) || (suffixStart < start))
+        {
+            return null;
+        }
+        return pageText.substring(start, suffixStart + 4);
+    }
+
+    /**
+     * @return X3D scene islands in document order, each from &lt;X3D through &lt;/X3D&gt;
+     */
+    public List<String> getX3dIslands()
+    {
+        return Collections.unmodifiableList(x3dIslands);
+    }
+
+    /**
+     * @return whether final island has no closing &lt;/X3D&gt; and runs to end of page
+     */
+    public boolean isLastIslandUnclosed()
+    {
+        return lastIslandUnclosed;
+    }
+
+    /**
+     * Find first script element matching a pattern.
+     *
+     * @param scriptPattern pattern for script element text
+     * @return matched text, or null if none
+     */
+    public String findScriptElement(Pattern scriptPattern)
+    {
+        return findElement(scriptElements, scriptPattern);
+    }
+
+    /**
+     * Find first link element matching a pattern.
+     *
+     * @param linkPattern pattern for link element text
+     * @return matched text, or null if none
+     */
+    public String findLinkElement(Pattern linkPattern)
+    {
+        return findElement(linkElements, linkPattern);
+    }
+
+    private static String findElement(List<String> elements, Pattern pattern)
+    {
+        for (String element : elements)
+        {
+            Matcher matcher = pattern.matcher(element);
+            if (matcher.find())
+            {
+                return matcher.group();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replace http X3D specification references by https, without regex processing.
+     *
+     * @param x3dText scene text
+     * @return scene text with https references
+     */
+    public static String toHttpsSpecificationReferences(String x3dText)
+    {
+        return x3dText.replace(HTTP_SPECIFICATION_PREFIX, HTTPS_SPECIFICATION_PREFIX);
+    }
+}
@@ -134,7 +134,7 @@ public class Index extends BaseServlet {
         response.setContentType("text/html");
         response.setCharacterEncoding("UTF-8");
 
-        File tempFile1 = null, tempDirectory = null, tempFile2 = null;
+        File tempDirectory = null, tempFile2 = null;
         CloseableHttpClient httpclient = null;
 
         try (PrintWriter outPrintWriter3 = response.getWriter()) {
@@ -152,7 +152,7 @@ public class Index extends BaseServlet {
 
                     if ((hiddenPath != null) && !hiddenPath.isEmpty()) // here if a file was passed through the url parameters
                     {
-                        doValidate(sb, hiddenPath, new File(hiddenPath));
+                        doValidate(sb, outPrintWriter3, hiddenPath, new File(hiddenPath));
                     } else { // here if the user chose one through the html file-input button
                         Enumeration<?> enumr = mpr.getFileNames();
                         while (enumr.hasMoreElements()) {
@@ -160,10 +160,13 @@ public class Index extends BaseServlet {
                             if (fsName == null) {
                                 sb.append("Must supply file\n");
                             } else {
-                                tempFile1 = new File(tempDirectory, fsName);
+                                File tempFile1 = new File(tempDirectory, fsName);
                                 sb.append("Local file ");
                                 // note that local path on client machine is not available due to browser security restrictions
-                                doValidate(sb, fsName, tempFile1);
+                                doValidate(sb, outPrintWriter3, fsName, tempFile1);
+                                if (!tempFile1.delete()) { // Validator leaves upload in place, remove before next one
+                                    System.out.println("*** Index unable to delete uploaded file " + tempFile1.getAbsolutePath());
+                                }
                             }
                         }
                     }
@@ -247,7 +250,7 @@ public class Index extends BaseServlet {
                         if (entity != null)
                         {
                             tempFile2 = copyFile(entity.getContent(), urlFilename);
-                            doValidate(sb, trimmedUrl, tempFile2);
+                            doValidate(sb, outPrintWriter3, trimmedUrl, tempFile2);
                         } else {
                             sb.append("empty retrieval from http request");
                         }
@@ -273,14 +276,11 @@ public class Index extends BaseServlet {
             }
             finally 
             {
-                if (tempFile1 != null) {
-                    cleanUpTempFile(tempFile1);
-                }
                 if (tempFile2 != null) {
                     cleanUpTempFile(tempFile2);
                 }
                 if (tempDirectory != null && tempDirectory.exists()) {
-                    tempDirectory.delete();
+                    cleanUpTempDir(tempDirectory);
                 }
                 if (httpclient != null) {
                     httpclient.close();
@@ -293,7 +293,15 @@ public class Index extends BaseServlet {
         }
     }
 
-    private void doValidate(StringBuilder sb, String simpleFileName, File f) throws Exception
+    /**
+     * Validate file, writing results so far and then streaming the validation report to the response.
+     *
+     * @param sb pending response text, written out and cleared before validation begins
+     * @param outPrintWriter response writer
+     * @param simpleFileName file name or url shown to user
+     * @param f local copy of file to validate
+     */
+    private void doValidate(StringBuilder sb, PrintWriter outPrintWriter, String simpleFileName, File f) throws Exception
     {
         if (simpleFileName.toLowerCase().endsWith(".x3d")) {
             sb.append("X3D model file name: ");
@@ -317,7 +325,9 @@ public class Index extends BaseServlet {
         // confirm url local or online
         if (trimmedUrl.contains(simpleFileName))
             sb.append(" (<a href='").append("https://savage.nps.edu/X3dValidator").append("?url=").append(trimmedUrl).append("'>").append("revalidation address").append("</a>)").append("\n");
-        sb.append(Validator.validate(f));
+        outPrintWriter.print(sb);
+        sb.setLength(0);
+        Validator.validate(f, outPrintWriter);
     }
 
     private File copyFile(InputStream inStr, String filename) throws IOException {
@@ -355,6 +365,21 @@ public class Index extends BaseServlet {
         }
     }
 
+    /** Delete upload directory along with any uploads not yet deleted, for example after an exception */
+    private void cleanUpTempDir(File dir) {
+        File[] remainingFiles = dir.listFiles();
+        if (remainingFiles != null) {
+            for (File remainingFile : remainingFiles) {
+                if (!remainingFile.delete()) {
+                    System.out.println("*** Index unable to delete uploaded file " + remainingFile.getAbsolutePath());
+                }
+            }
+        }
+        if (!dir.delete()) {
+            System.out.println("*** Index unable to delete temp directory " + dir.getAbsolutePath());
+        }
+    }
+
     private File makeTempDir() throws IOException {
         final File temp;
 
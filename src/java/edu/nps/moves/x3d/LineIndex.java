@@ -0,0 +1,119 @@
+/*
+ * Filename:     LineIndex.java
+ * Created:      17 OCT 2026
+ * Description:  Line start offsets of scene text, for converting character positions to line and column
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package edu.nps.moves.x3d;
+
+import java.util.Arrays;
+
+/**
+ * Start offset of every line in a text, built in one pass and held in a growable
+ * int array, so that a character position converts to line and column by binary
+ * search.  Line terminators are LF, CR, or CR LF, as for BufferedReader.readLine(),
+ * so positions in files with Windows line endings are reported correctly.
+ *
+ * Immutable once built, safe to share between threads.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public final class LineIndex
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int[] lineStarts; // lineStarts[i] is offset of first character of line i+1
+    private final int   lineCount;
+
+    /**
+     * Build index of text.
+     *
+     * @param text scene text
+     */
+    public LineIndex(CharSequence text)
+    {
+        int[] starts = new int[INITIAL_CAPACITY];
+        int   count  = 0;
+        starts[count++] = 0; // line 1
+        int length = text.length();
+        for (int i = 0; i < length; i++)
+        {
+            char c = text.charAt(i);
+            if ((c == '\r') && (i + 1 < length) && (text.charAt(i + 1) == '\n'))
+            {
+                i++; // CR LF is a single line terminator
+            }
+            else if ((c != '\n') && (c != '\r'))
+            {
+                continue;
+            }
+            if (count == starts.length)
+            {
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            starts[count++] = i + 1;
+        }
+        lineStarts = starts;
+        lineCount  = count;
+    }
+
+    /**
+     * @return number of lines, counting a final line without terminator
+     */
+    public int getLineCount()
+    {
+        return lineCount;
+    }
+
+    /**
+     * @param offset character position in text, from 0
+     * @return line containing position, from 1
+     */
+    public int getLine(int offset)
+    {
+        int index = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+        return (index >= 0) ? (index + 1) : -(index + 1); // insertion point is one past the containing line
+    }
+
+    /**
+     * @param offset character position in text, from 0
+     * @return position within its line, from 0
+     */
+    public int getColumn(int offset)
+    {
+        return offset - lineStarts[getLine(offset) - 1];
+    }
+}
@@ -17,15 +17,38 @@ import org.apache.logging.log4j.core.LogEvent;
 public class Log4JListener implements Appender
 {
     
-  public static StringBuilder sb = new StringBuilder();  // dummy, normally poked
-  public static int numMessages = 0;
+  // per thread, so that simultaneous validations each capture only their own messages
+  private static final ThreadLocal<StringBuilder> threadLog          = new ThreadLocal<>();
+  private static final ThreadLocal<int[]>         threadMessageCount = ThreadLocal.withInitial(() -> new int[1]);
+
+  /**
+   * Capture messages logged on the current thread into a validation report.
+   * @param sb report receiving messages, or null to stop capturing
+   */
+  public static void setLog(StringBuilder sb)
+  {
+    if (sb == null)
+      threadLog.remove();
+    else
+      threadLog.set(sb);
+  }
+
+  /**
+   * @return number of messages logged so far on the current thread
+   */
+  public static int getMessageCount()
+  {
+    return threadMessageCount.get()[0];
+  }
   
   @Override
   public void append(LogEvent le)
   {
     // todo, check for other attributes, like level
-    sb.append(le.getMessage());
-    numMessages++;
+    StringBuilder sb = threadLog.get();
+    if (sb != null)
+      sb.append(le.getMessage());
+    threadMessageCount.get()[0]++;
   }
 
     @Override
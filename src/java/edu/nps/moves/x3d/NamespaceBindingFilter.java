@@ -0,0 +1,250 @@
+/*
+ * Filename:     NamespaceBindingFilter.java
+ * Created:      17 OCT 2026
+ * Description:  Add namespace processing to SAX events of a non-namespace-aware parser, feeding schema validation from the DTD pass
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.util.Enumeration;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.NamespaceSupport;
+
+/**
+ * Receives SAX events from a parser running with namespace processing off, as the
+ * well-formed and DTD checks always have, and forwards them with namespace URIs,
+ * local names and prefix mappings resolved to a namespace-aware consumer such as a
+ * schema ValidatorHandler.  This lets one parse serve all three checks.
+ *
+ * An unbound prefix is not a well-formedness or DTD problem, so it is reported to
+ * the schema error handler as a fatal error, just as a separate namespace-aware
+ * schema parse would have reported it, and nothing further is forwarded.  Likewise
+ * an exception thrown by the consumer only stops forwarding, never the parse, so
+ * that the well-formed and DTD checks always run to completion.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class NamespaceBindingFilter extends DefaultHandler
+{
+    private static final String XMLNS        = "xmlns";
+    private static final String XMLNS_PREFIX = "xmlns:";
+
+    private final ContentHandler   target;
+    private final ErrorHandler     errorHandler;
+    private final NamespaceSupport namespaceSupport = new NamespaceSupport();
+    private final String[]         nameParts        = new String[3];
+    private final AttributesImpl   resolvedAttributes = new AttributesImpl();
+    private Locator locator;
+    private boolean stopped = false;
+
+    /**
+     * @param target namespace-aware consumer of resolved events
+     * @param errorHandler receives unbound prefix errors, normally the same handler as target's
+     */
+    public NamespaceBindingFilter(ContentHandler target, ErrorHandler errorHandler)
+    {
+        this.target       = target;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * @return whether forwarding stopped because of an unbound prefix
+     */
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator)
+    {
+        this.locator = locator;
+        target.setDocumentLocator(locator);
+    }
+
+    @Override
+    public void startDocument()
+    {
+        namespaceSupport.reset();
+        try {
+            target.startDocument();
+        } catch (SAXException saxe) {
+            stopped = true;
+        }
+    }
+
+    @Override
+    public void endDocument()
+    {
+        if (!stopped)
+        {
+            try {
+                target.endDocument();
+            } catch (SAXException saxe) {
+                stopped = true;
+            }
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes)
+    {
+        if (stopped)
+        {
+            return;
+        }
+        try {
+            forwardStartElement(qName, attributes);
+        } catch (SAXException saxe) {
+            stopped = true;
+        }
+    }
+
+    private void forwardStartElement(String qName, Attributes attributes) throws SAXException
+    {
+        namespaceSupport.pushContext();
+        for (int i = 0; i < attributes.getLength(); i++)
+        {
+            String attributeName = attributes.getQName(i);
+            if (attributeName.equals(XMLNS))
+            {
+                namespaceSupport.declarePrefix("", attributes.getValue(i));
+                target.startPrefixMapping("", attributes.getValue(i));
+            }
+            else if (attributeName.startsWith(XMLNS_PREFIX))
+            {
+                String prefix = attributeName.substring(XMLNS_PREFIX.length());
+                namespaceSupport.declarePrefix(prefix, attributes.getValue(i));
+                target.startPrefixMapping(prefix, attributes.getValue(i));
+            }
+        }
+        resolvedAttributes.clear();
+        for (int i = 0; i < attributes.getLength(); i++)
+        {
+            String attributeName = attributes.getQName(i);
+            if (attributeName.equals(XMLNS) || attributeName.startsWith(XMLNS_PREFIX))
+            {
+                continue; // namespace declarations are not attributes to a namespace-aware consumer
+            }
+            if (namespaceSupport.processName(attributeName, nameParts, true) == null)
+            {
+                unbound("attribute \"" + attributeName + "\" associated with an element type \"" + qName + "\"", attributeName);
+                return;
+            }
+            resolvedAttributes.addAttribute(nameParts[0], nameParts[1], attributeName, attributes.getType(i), attributes.getValue(i));
+        }
+        if (namespaceSupport.processName(qName, nameParts, false) == null)
+        {
+            unbound("element \"" + qName + "\"", qName);
+            return;
+        }
+        target.startElement(nameParts[0], nameParts[1], qName, resolvedAttributes);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName)
+    {
+        if (stopped)
+        {
+            return;
+        }
+        try {
+            namespaceSupport.processName(qName, nameParts, false);
+            target.endElement(nameParts[0], nameParts[1], qName);
+            Enumeration<?> declaredPrefixes = namespaceSupport.getDeclaredPrefixes();
+            while (declaredPrefixes.hasMoreElements())
+            {
+                target.endPrefixMapping((String) declaredPrefixes.nextElement());
+            }
+        } catch (SAXException saxe) {
+            stopped = true;
+        }
+        namespaceSupport.popContext();
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length)
+    {
+        if (!stopped)
+        {
+            try {
+                target.characters(ch, start, length);
+            } catch (SAXException saxe) {
+                stopped = true;
+            }
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length)
+    {
+        if (!stopped)
+        {
+            try {
+                target.ignorableWhitespace(ch, start, length);
+            } catch (SAXException saxe) {
+                stopped = true;
+            }
+        }
+    }
+
+    @Override
+    public void processingInstruction(String piTarget, String data)
+    {
+        if (!stopped)
+        {
+            try {
+                target.processingInstruction(piTarget, data);
+            } catch (SAXException saxe) {
+                stopped = true;
+            }
+        }
+    }
+
+    /** report unbound prefix in same wording as Xerces namespace-aware parsing, then stop forwarding */
+    private void unbound(String description, String prefixedName) throws SAXException
+    {
+        stopped = true;
+        String prefix = prefixedName.substring(0, Math.max(prefixedName.indexOf(':'), 0));
+        errorHandler.fatalError(new SAXParseException("The prefix \"" + prefix + "\" for " + description + " is not bound.", locator));
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Filename:     SaxParserPool.java
+ * Created:      17 OCT 2026
+ * Description:  Per-configuration pools of reusable SAX parsers, avoiding factory lookup and parser construction per request
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import org.apache.xerces.jaxp.JAXPConstants;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Keeps one pool of reusable SAX parsers per parser configuration, so that requests
+ * neither repeat the META-INF/services lookup of SAXParserFactory.newInstance() nor
+ * construct a new parser for every stage.  Each configuration's factory is created
+ * once; parsers are reset when returned and handed out again.
+ *
+ * At most {@link #MAXIMUM_POOL_SIZE} parsers of each configuration are in use at once,
+ * further callers wait for a parser to be returned.  Time spent waiting is counted so
+ * that {@link #getStatistics()} shows whether the pool is too small for the load.
+ *
+ * Usage, always returning the parser even when parsing fails:
+ * <pre>
+ *     try (SaxParserPool.PooledParser pooledParser = SaxParserPool.borrow(SaxParserPool.Configuration.DTD_VALIDATING))
+ *     {
+ *         XMLReader xmlReader = pooledParser.getXMLReader();
+ *         ...
+ *     }
+ * </pre>
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public final class SaxParserPool
+{
+    /** Parser configurations used by the validator */
+    public enum Configuration
+    {
+        /** well-formed check only, namespace processing off, shared DTD grammar pool */
+        NON_VALIDATING,
+        /** DTD validation, namespace processing off, shared DTD grammar pool */
+        DTD_VALIDATING,
+        /** schema validation using xsd:noNamespaceSchemaLocation hint, namespace-aware */
+        SCHEMA_VALIDATING,
+        /** namespace-aware, non-validating, for ValidatorHandler and XSLT input */
+        NAMESPACE_AWARE
+    }
+
+    /** parsers of each configuration in use at once, also the number kept when idle */
+    public static final int MAXIMUM_POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final Map<Configuration, Pool> pools = new EnumMap<>(Configuration.class);
+
+    static
+    {
+        for (Configuration configuration : Configuration.values())
+        {
+            pools.put(configuration, new Pool(configuration));
+        }
+    }
+
+    private SaxParserPool()
+    {
+        // static utility class, no instances
+    }
+
+    /**
+     * Borrow a parser, waiting if all parsers of this configuration are in use.
+     * The caller owns the parser until {@link PooledParser#close()}.
+     *
+     * @param configuration parser configuration
+     * @return pooled parser, to be closed after use
+     * @throws SAXException if a new parser cannot be created or waiting is interrupted
+     */
+    public static PooledParser borrow(Configuration configuration) throws SAXException
+    {
+        return pools.get(configuration).borrow();
+    }
+
+    /**
+     * @return one-line summary of pool counters for console logging
+     */
+    public static String getStatistics()
+    {
+        StringBuilder statistics = new StringBuilder("SaxParserPool:");
+        for (Pool pool : pools.values())
+        {
+            statistics.append(' ').append(pool.getStatistics());
+        }
+        return statistics.toString();
+    }
+
+    /**
+     * Parser on loan from the pool.  Handlers and properties set by the borrower are
+     * reset when it is closed.  Not shareable between threads.
+     */
+    public static final class PooledParser implements AutoCloseable
+    {
+        private final Pool      pool;
+        private final SAXParser saxParser; // null for Xerces parsers created directly
+        private final XMLReader xmlReader;
+        private boolean returned = false;
+
+        private PooledParser(Pool pool, SAXParser saxParser, XMLReader xmlReader)
+        {
+            this.pool      = pool;
+            this.saxParser = saxParser;
+            this.xmlReader = xmlReader;
+        }
+
+        /**
+         * @return parser, valid until this PooledParser is closed
+         */
+        public XMLReader getXMLReader()
+        {
+            return xmlReader;
+        }
+
+        /** Reset parser and return it to its pool */
+        @Override
+        public void close()
+        {
+            if (!returned)
+            {
+                returned = true;
+                pool.release(this);
+            }
+        }
+    }
+
+    /** Idle parsers and counters of one configuration */
+    private static final class Pool
+    {
+        private final Configuration configuration;
+        private final SAXParserFactory saxParserFactory; // null for Xerces parsers created directly
+        private final ConcurrentLinkedDeque<PooledParser> idleParsers = new ConcurrentLinkedDeque<>();
+        private final Semaphore permits = new Semaphore(MAXIMUM_POOL_SIZE, true);
+
+        private final AtomicInteger createCount   = new AtomicInteger();
+        private final AtomicLong    borrowCount   = new AtomicLong();
+        private final AtomicLong    waitCount     = new AtomicLong();
+        private final AtomicLong    waitTimeNanos = new AtomicLong();
+        private final AtomicInteger discardCount  = new AtomicInteger();
+
+        Pool(Configuration configuration)
+        {
+            this.configuration = configuration;
+            switch (configuration)
+            {
+                case SCHEMA_VALIDATING:
+                    saxParserFactory = SAXParserFactory.newInstance();
+                    saxParserFactory.setNamespaceAware(true);
+                    saxParserFactory.setValidating(true);
+                    break;
+                case NAMESPACE_AWARE:
+                    saxParserFactory = SAXParserFactory.newInstance();
+                    saxParserFactory.setNamespaceAware(true);
+                    break;
+                default:
+                    saxParserFactory = null;
+            }
+        }
+
+        PooledParser borrow() throws SAXException
+        {
+            borrowCount.incrementAndGet();
+            if (!permits.tryAcquire())
+            {
+                waitCount.incrementAndGet();
+                long startTime = System.nanoTime();
+                try {
+                    permits.acquire();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new SAXException("interrupted while waiting for " + configuration + " parser", ie);
+                } finally {
+                    waitTimeNanos.addAndGet(System.nanoTime() - startTime);
+                }
+            }
+            PooledParser pooledParser = idleParsers.pollFirst();
+            if (pooledParser != null)
+            {
+                pooledParser.returned = false;
+                return pooledParser;
+            }
+            try {
+                return create();
+            } catch (SAXException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private PooledParser create() throws SAXException
+        {
+            PooledParser pooledParser;
+            switch (configuration)
+            {
+                case NON_VALIDATING:
+                    pooledParser = new PooledParser(this, null, X3dGrammarPool.newXMLReader(false));
+                    break;
+                case DTD_VALIDATING:
+                    pooledParser = new PooledParser(this, null, X3dGrammarPool.newXMLReader(true));
+                    break;
+                default:
+                    SAXParser saxParser;
+                    try {
+                        synchronized (saxParserFactory) // factories are not guaranteed thread-safe
+                        {
+                            saxParser = saxParserFactory.newSAXParser();
+                        }
+                    } catch (ParserConfigurationException pce) {
+                        throw new SAXException(pce);
+                    }
+                    configure(saxParser);
+                    pooledParser = new PooledParser(this, saxParser, saxParser.getXMLReader());
+            }
+            createCount.incrementAndGet();
+            return pooledParser;
+        }
+
+        /** apply settings that SAXParser.reset() does not preserve */
+        private void configure(SAXParser saxParser) throws SAXException
+        {
+            if (configuration == Configuration.SCHEMA_VALIDATING)
+            {
+                saxParser.setProperty(JAXPConstants.JAXP_SCHEMA_LANGUAGE, JAXPConstants.W3C_XML_SCHEMA); // see xerces example at http://xerces.apache.org/xerces2-j/faq-pcfp.html
+            }
+        }
+
+        void release(PooledParser pooledParser)
+        {
+            try {
+                if (pooledParser.saxParser != null)
+                {
+                    pooledParser.saxParser.reset();
+                    configure(pooledParser.saxParser);
+                }
+                else
+                {
+                    XMLReader xmlReader = pooledParser.xmlReader;
+                    xmlReader.setContentHandler(null);
+                    xmlReader.setDTDHandler(null);
+                    xmlReader.setEntityResolver(null);
+                    xmlReader.setErrorHandler(null);
+                }
+                idleParsers.offerFirst(pooledParser); // most recently used parser is warmest
+            } catch (SAXException | RuntimeException e) {
+                discardCount.incrementAndGet(); // parser that cannot be reset is not reused
+                System.out.println("*** SaxParserPool discarding " + configuration + " parser: " + e.getLocalizedMessage());
+            } finally {
+                permits.release();
+            }
+        }
+
+        String getStatistics()
+        {
+            return configuration + "[" + createCount.get() + " created, " + idleParsers.size() + " idle, "
+                    + borrowCount.get() + " borrowed, " + waitCount.get() + " waits, "
+                    + (waitTimeNanos.get() / 1000000) + " msec waiting, " + discardCount.get() + " discarded]";
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Filename:     SceneSource.java
+ * Created:      17 OCT 2026
+ * Description:  Scene content read once and shared as byte, text and parser-input views by all validation stages
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package edu.nps.moves.x3d;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import javax.xml.transform.stream.StreamSource;
+import org.xml.sax.InputSource;
+
+/**
+ * Immutable scene content, read from disk once and then shared by every validation
+ * stage as bytes, decoded characters, or fresh parser input.  Large files are
+ * memory-mapped rather than copied onto the heap.
+ *
+ * Text is decoded once, on first request, in the encoding the document declares
+ * (see {@link XmlCharsetDecoder}), never the platform default.  Parser inputs for
+ * scenes read from file are built over the original bytes, so that XML parsers
+ * detect the encoding themselves.  Scenes created from text are handed to parsers
+ * as characters and are only encoded if their bytes are explicitly requested.
+ *
+ * Instances are safe to share between threads.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public final class SceneSource
+{
+    /** files of at least this many bytes are memory-mapped instead of read onto the heap */
+    public static final long MAPPING_THRESHOLD = 1024 * 1024;
+
+    private final File       file;
+    private final Charset    charset;
+    private final boolean    fromText;
+    private volatile ByteBuffer bytes; // read-only, position 0, never handed out directly
+    private volatile CharBuffer chars; // read-only, position 0, released once text exists
+    private volatile String     text;
+
+    private SceneSource(ByteBuffer bytes, String text, Charset charset, File file)
+    {
+        this.bytes    = bytes;
+        this.text     = text;
+        this.charset  = charset;
+        this.file     = file;
+        this.fromText = (text != null);
+    }
+
+    /**
+     * Read scene file once, memory-mapping large files.
+     *
+     * @param sceneFile scene to read
+     * @return scene content
+     * @throws IOException if file cannot be read
+     */
+    public static SceneSource fromFile(File sceneFile) throws IOException
+    {
+        return fromFile(sceneFile, true);
+    }
+
+    /**
+     * Read scene file once.  A mapped file cannot be truncated or replaced on some
+     * platforms until the mapping is garbage collected, so callers that may rewrite
+     * the file should not map it.
+     *
+     * @param sceneFile scene to read
+     * @param mapLargeFiles whether files of at least {@link #MAPPING_THRESHOLD} bytes are memory-mapped
+     * @return scene content
+     * @throws IOException if file cannot be read
+     */
+    public static SceneSource fromFile(File sceneFile, boolean mapLargeFiles) throws IOException
+    {
+        try (FileChannel fileChannel = FileChannel.open(sceneFile.toPath(), StandardOpenOption.READ))
+        {
+            long size = fileChannel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("scene \"" + sceneFile + "\" too large: " + size + " bytes");
+            }
+            ByteBuffer byteBuffer;
+            if (mapLargeFiles && (size >= MAPPING_THRESHOLD))
+            {
+                byteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size); // mapping remains valid after channel is closed
+            }
+            else
+            {
+                byteBuffer = ByteBuffer.allocate((int) size);
+                while (byteBuffer.hasRemaining() && (fileChannel.read(byteBuffer) >= 0))
+                {
+                    // read until full or end of file
+                }
+                byteBuffer.flip();
+            }
+            return new SceneSource(byteBuffer.asReadOnlyBuffer(), null, XmlCharsetDecoder.detectCharset(byteBuffer), sceneFile);
+        }
+    }
+
+    /**
+     * Wrap scene text already held in memory, such as a scene excerpted from an HTML page.
+     *
+     * @param sceneText scene content
+     * @param charset encoding used if bytes are requested, normally that of the XML declaration
+     * @param sceneFile file holding (or named for) this content, base for resolving relative references, may be null
+     * @return scene content
+     */
+    public static SceneSource fromText(String sceneText, Charset charset, File sceneFile)
+    {
+        return new SceneSource(null, sceneText, charset, sceneFile);
+    }
+
+    /**
+     * @return scene file, may be null
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return path of scene file for diagnostic messages, or empty string if none
+     */
+    public String getFileName()
+    {
+        return (file != null) ? file.getPath() : "";
+    }
+
+    /**
+     * @return system identifier (file URI) used as base for relative references, may be null
+     */
+    public String getSystemId()
+    {
+        return (file != null) ? file.toURI().toString() : null;
+    }
+
+    /**
+     * @return encoding of scene bytes, detected from byte order mark or XML declaration when read from file
+     */
+    public Charset getCharset()
+    {
+        return charset;
+    }
+
+    /**
+     * @return length of scene in bytes
+     */
+    public int getByteLength()
+    {
+        return encodedBytes().limit();
+    }
+
+    /**
+     * @return independent read-only view of scene bytes, positioned at start
+     */
+    public ByteBuffer getBytes()
+    {
+        return encodedBytes().duplicate();
+    }
+
+    private ByteBuffer encodedBytes()
+    {
+        ByteBuffer byteBuffer = bytes;
+        if (byteBuffer == null) // only for scenes created from text
+        {
+            byteBuffer = charset.encode(text).asReadOnlyBuffer();
+            bytes = byteBuffer; // benign race, every thread encodes identical bytes
+        }
+        return byteBuffer;
+    }
+
+    /**
+     * Scene characters without intermediate String copy, decoded on first call and shared thereafter.
+     *
+     * @return independent read-only view of scene characters, positioned at start
+     */
+    public CharBuffer getChars()
+    {
+        String sceneText = text;
+        if (sceneText != null)
+        {
+            return CharBuffer.wrap(sceneText);
+        }
+        CharBuffer charBuffer = chars;
+        if (charBuffer == null)
+        {
+            charBuffer = XmlCharsetDecoder.decode(bytes, charset).asReadOnlyBuffer();
+            chars = charBuffer; // benign race, every thread decodes identical characters
+        }
+        return charBuffer.duplicate();
+    }
+
+    /**
+     * Beginning of scene characters, decoding no more bytes than needed when the scene
+     * has not been decoded yet, so that headers of very large scenes can be examined
+     * without reading the rest.
+     *
+     * @param maxChars maximum number of characters
+     * @return read-only view of first characters, shorter than maxChars only if scene is shorter
+     */
+    public CharBuffer getPrefix(int maxChars)
+    {
+        String sceneText = text;
+        if (sceneText != null)
+        {
+            return CharBuffer.wrap(sceneText, 0, Math.min(maxChars, sceneText.length()));
+        }
+        CharBuffer prefix = chars;
+        if (prefix != null)
+        {
+            prefix = prefix.duplicate();
+        }
+        else
+        {
+            ByteBuffer prefixBytes = bytes.duplicate();
+            long maxBytes = 4L * maxChars + 4; // at most four bytes per character in any XML encoding, plus byte order mark
+            prefixBytes.limit((int) Math.min(prefixBytes.limit(), maxBytes));
+            prefix = XmlCharsetDecoder.decode(prefixBytes, charset).asReadOnlyBuffer(); // character cut at end of bytes, if any, lies beyond maxChars
+        }
+        prefix.limit(Math.min(maxChars, prefix.limit()));
+        return prefix;
+    }
+
+    /**
+     * Scene text, decoded on first call and shared thereafter.
+     *
+     * @return scene text
+     */
+    public String getText()
+    {
+        String sceneText = text;
+        if (sceneText == null)
+        {
+            sceneText = getChars().toString();
+            text  = sceneText; // benign race, every thread decodes identical text
+            chars = null;      // text now serves character views too
+        }
+        return sceneText;
+    }
+
+    /**
+     * @return new InputStream reading scene bytes from the start
+     */
+    public InputStream newInputStream()
+    {
+        return new ByteBufferInputStream(getBytes());
+    }
+
+    /**
+     * @return new SAX parser input over scene bytes, or characters if created from text, with system identifier set
+     */
+    public InputSource newInputSource()
+    {
+        InputSource inputSource = fromText ? new InputSource(new StringReader(text)) : new InputSource(newInputStream());
+        inputSource.setSystemId(getSystemId());
+        return inputSource;
+    }
+
+    /**
+     * @return new XSLT input over scene bytes, or characters if created from text, with system identifier set
+     */
+    public StreamSource newStreamSource()
+    {
+        return fromText ? new StreamSource(new StringReader(text), getSystemId()) : new StreamSource(newInputStream(), getSystemId());
+    }
+
+    /** Reads a ByteBuffer view without copying it, closing is unnecessary */
+    private static final class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer byteBuffer;
+
+        ByteBufferInputStream(ByteBuffer byteBuffer)
+        {
+            this.byteBuffer = byteBuffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return byteBuffer.hasRemaining() ? (byteBuffer.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length)
+        {
+            if (length == 0)
+            {
+                return 0;
+            }
+            if (!byteBuffer.hasRemaining())
+            {
+                return -1;
+            }
+            int count = Math.min(length, byteBuffer.remaining());
+            byteBuffer.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long count)
+        {
+            int skipped = (int) Math.max(0, Math.min(count, byteBuffer.remaining()));
+            byteBuffer.position(byteBuffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available()
+        {
+            return byteBuffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Filename:     StylesheetBenchmark.java
+ * Created:      17 OCT 2026
+ * Description:  Time conversion stylesheets against a generated scene with many DEF, USE and ROUTE references
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.serialize.MessageEmitter;
+
+/**
+ * Generates a large X3D scene full of DEF, USE, ROUTE and ProtoInstance references,
+ * then times the conversion stylesheets used by Validator against it.  When a
+ * directory holding an earlier copy of the stylesheets is provided, that baseline is
+ * timed against the same scene so that the effect of stylesheet changes (such as
+ * keyed DEF and ROUTE lookups) can be compared directly.
+ *
+ * Invoked by Ant target benchmark.stylesheets, for example:
+ * <pre>  ant benchmark.stylesheets -Dbenchmark.node.groups=5000</pre>
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class StylesheetBenchmark
+{
+    /** stylesheets timed by this benchmark, each performing DEF/USE and ROUTE lookups */
+    public static final String[] BENCHMARK_STYLESHEETS = {
+        "X3dToX3dvClassicVrmlEncoding.xslt", // imports X3dToVrml97.xslt
+        "X3dTidy.xslt",
+        "X3dToXhtml.xslt"
+    };
+
+    /** default number of Transform/Shape/PositionInterpolator groups in generated scene */
+    public static final int DEFAULT_NODE_GROUPS = 2000;
+
+    /** default number of ROUTEs per node group, so that ROUTE numbering in X3dToXhtml.xslt sees thousands of ROUTEs */
+    public static final int DEFAULT_ROUTES_PER_GROUP = 5;
+
+    /** timed repetitions per stylesheet, following one untimed warm-up run */
+    public static final int REPETITIONS = 3;
+
+    /** discards xsl:message output, which is voluminous for generated scenes */
+    private static class DiscardingWriter extends Writer
+    {
+        @Override
+        public void write(char[] cbuf, int off, int len)
+        {
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    /**
+     * Write a generated scene.  Each node group contributes a DEF'd Transform holding
+     * either a DEF'd Shape or a USE of the previous group's Shape, a DEF'd
+     * PositionInterpolator and its ROUTEs; every tenth group adds a ProtoInstance.
+     * Two ROUTEs per group are written at the end of the scene and any further ROUTEs
+     * follow the group's PositionInterpolator, so that ROUTEs are spread throughout
+     * document order.  No DOCTYPE is written so that parsing needs no network access.
+     *
+     * @param sceneFile destination file
+     * @param nodeGroups number of node groups
+     * @param routesPerGroup number of ROUTEs per node group, at least two
+     * @return number of DEF attributes written
+     * @throws IOException if scene cannot be written
+     */
+    public static int generateScene(File sceneFile, int nodeGroups, int routesPerGroup) throws IOException
+    {
+        int defCount = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(sceneFile.toPath()), StandardCharsets.UTF_8)))
+        {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<X3D profile='Immersive' version='3.3' xmlns:xsd='http://www.w3.org/2001/XMLSchema-instance' xsd:noNamespaceSchemaLocation='http://www.web3d.org/specifications/x3d-3.3.xsd'>\n");
+            writer.write("  <head>\n");
+            writer.write("    <meta content='" + sceneFile.getName() + "' name='title'/>\n");
+            writer.write("    <meta content='Generated scene with " + nodeGroups + " node groups for stylesheet benchmarking.' name='description'/>\n");
+            writer.write("  </head>\n");
+            writer.write("  <Scene>\n");
+            writer.write("    <ProtoDeclare name='BenchmarkProto'>\n");
+            writer.write("      <ProtoInterface>\n");
+            writer.write("        <field accessType='inputOutput' name='translation' type='SFVec3f' value='0 0 0'/>\n");
+            writer.write("      </ProtoInterface>\n");
+            writer.write("      <ProtoBody>\n");
+            writer.write("        <Transform>\n");
+            writer.write("          <IS>\n");
+            writer.write("            <connect nodeField='translation' protoField='translation'/>\n");
+            writer.write("          </IS>\n");
+            writer.write("          <Shape>\n");
+            writer.write("            <Box/>\n");
+            writer.write("          </Shape>\n");
+            writer.write("        </Transform>\n");
+            writer.write("      </ProtoBody>\n");
+            writer.write("    </ProtoDeclare>\n");
+            writer.write("    <TimeSensor DEF='Clock' cycleInterval='10' loop='true'/>\n");
+            defCount++;
+            for (int i = 0; i < nodeGroups; i++)
+            {
+                writer.write("    <Transform DEF='T" + i + "' translation='" + i + " 0 0'>\n");
+                defCount++;
+                if ((i % 2) == 0)
+                {
+                    writer.write("      <Shape DEF='S" + i + "'>\n");
+                    writer.write("        <Appearance DEF='A" + i + "'>\n");
+                    writer.write("          <Material diffuseColor='0.8 0.2 0.2'/>\n");
+                    writer.write("        </Appearance>\n");
+                    writer.write("        <Box size='0.5 0.5 0.5'/>\n");
+                    writer.write("      </Shape>\n");
+                    defCount += 2;
+                }
+                else
+                {
+                    writer.write("      <Shape USE='S" + (i - 1) + "'/>\n");
+                }
+                writer.write("    </Transform>\n");
+                writer.write("    <PositionInterpolator DEF='P" + i + "' key='0 1' keyValue='" + i + " 0 0 " + i + " 1 0'/>\n");
+                defCount++;
+                for (int k = 1; k <= routesPerGroup - 2; k++)
+                {
+                    writer.write("    <ROUTE fromField='value_changed' fromNode='P" + i + "' toField='set_translation' toNode='T" + ((i + k) % nodeGroups) + "'/>\n");
+                }
+                if ((i % 10) == 0)
+                {
+                    writer.write("    <ProtoInstance DEF='I" + i + "' name='BenchmarkProto'>\n");
+                    writer.write("      <fieldValue name='translation' value='" + i + " 2 0'/>\n");
+                    writer.write("    </ProtoInstance>\n");
+                    defCount++;
+                }
+            }
+            for (int i = 0; i < nodeGroups; i++)
+            {
+                writer.write("    <ROUTE fromField='fraction_changed' fromNode='Clock' toField='set_fraction' toNode='P" + i + "'/>\n");
+                writer.write("    <ROUTE fromField='value_changed' fromNode='P" + i + "' toField='set_translation' toNode='T" + i + "'/>\n");
+            }
+            writer.write("  </Scene>\n");
+            writer.write("</X3D>\n");
+        }
+        return defCount;
+    }
+
+    /**
+     * Time one stylesheet: one untimed warm-up run, then {@link #REPETITIONS} timed runs.
+     *
+     * @param templates compiled stylesheet
+     * @param sceneTree parsed scene
+     * @return fastest elapsed time, in milliseconds
+     * @throws TransformerException if transformation fails
+     */
+    public static long timeStylesheet(Templates templates, Source sceneTree) throws TransformerException
+    {
+        long fastestNanos = Long.MAX_VALUE;
+        for (int run = 0; run <= REPETITIONS; run++)
+        {
+            Transformer transformer = templates.newTransformer();
+            transformer.setParameter("baseUrlAvailable", "false"); // matches Validator usage of X3dToXhtml.xslt
+            MessageEmitter messageEmitter = new MessageEmitter(); // writes xsl:message output to its writer, unlike MessageWarner
+            messageEmitter.setWriter(new DiscardingWriter());
+            ((net.sf.saxon.Controller) transformer).setMessageEmitter(messageEmitter);
+
+            long startTime = System.nanoTime();
+            transformer.transform(sceneTree, new DiscardingContentHandler().newResult());
+            long elapsedTime = System.nanoTime() - startTime;
+            if (run > 0) // first run is warm-up
+            {
+                fastestNanos = Math.min(fastestNanos, elapsedTime);
+            }
+        }
+        return fastestNanos / 1000000;
+    }
+
+    /**
+     * Compile baseline copies of stylesheets from a directory with a factory of their own.
+     * Imports are resolved relative to the baseline directory, not the classpath.  Saxon
+     * only transforms trees built by the same Configuration, so the scene is parsed again
+     * for the baseline, see {@link #buildBaselineSceneTree(net.sf.saxon.TransformerFactoryImpl, File)}.
+     *
+     * @param baselineTransformerFactory factory used for all baseline stylesheets
+     * @param baselineDirectory directory holding earlier stylesheet copies
+     * @param stylesheetName file name of stylesheet
+     * @return compiled baseline stylesheet, or null if not present
+     * @throws TransformerException if stylesheet fails to compile
+     */
+    private static Templates compileBaseline(net.sf.saxon.TransformerFactoryImpl baselineTransformerFactory, File baselineDirectory, String stylesheetName) throws TransformerException
+    {
+        File stylesheetFile = new File(baselineDirectory, stylesheetName);
+        if (!stylesheetFile.isFile())
+        {
+            return null;
+        }
+        return baselineTransformerFactory.newTemplates(new StreamSource(stylesheetFile));
+    }
+
+    /**
+     * Parse the generated scene into a tree belonging to the baseline factory's Configuration.
+     *
+     * @param baselineTransformerFactory factory used for all baseline stylesheets
+     * @param sceneFile generated scene, which has no DOCTYPE
+     * @return document node of parsed scene
+     * @throws net.sf.saxon.s9api.SaxonApiException if the scene cannot be parsed
+     */
+    private static Source buildBaselineSceneTree(net.sf.saxon.TransformerFactoryImpl baselineTransformerFactory, File sceneFile) throws net.sf.saxon.s9api.SaxonApiException
+    {
+        return new net.sf.saxon.s9api.Processor(baselineTransformerFactory.getConfiguration()).newDocumentBuilder().build(sceneFile).getUnderlyingNode();
+    }
+
+    /**
+     * @param args optional number of node groups, optional baseline stylesheet directory, optional number of ROUTEs per node group
+     */
+    public static void main(String[] args)
+    {
+        int nodeGroups = DEFAULT_NODE_GROUPS;
+        int routesPerGroup = DEFAULT_ROUTES_PER_GROUP;
+        File baselineDirectory = null;
+        if (args.length > 0)
+        {
+            nodeGroups = Integer.parseInt(args[0]);
+        }
+        if ((args.length > 1) && !args[1].isEmpty())
+        {
+            baselineDirectory = new File(args[1]);
+            if (!baselineDirectory.isDirectory())
+            {
+                System.out.println("StylesheetBenchmark baseline directory " + baselineDirectory + " not found, timing current stylesheets only");
+                baselineDirectory = null;
+            }
+        }
+        if ((args.length > 2) && !args[2].isEmpty())
+        {
+            routesPerGroup = Math.max(2, Integer.parseInt(args[2]));
+        }
+        try {
+            File sceneFile = File.createTempFile("StylesheetBenchmark", ".x3d");
+            sceneFile.deleteOnExit();
+            int defCount = generateScene(sceneFile, nodeGroups, routesPerGroup);
+            System.out.println("StylesheetBenchmark generated " + sceneFile.getName() + " with " + nodeGroups + " node groups, "
+                    + defCount + " DEF nodes, " + (routesPerGroup * nodeGroups) + " ROUTEs, " + sceneFile.length() + " bytes");
+            Source sceneTree = StylesheetCache.buildSceneTree(sceneFile);
+            net.sf.saxon.TransformerFactoryImpl baselineTransformerFactory = null;
+            Source baselineSceneTree = null;
+            if (baselineDirectory != null)
+            {
+                baselineTransformerFactory = new net.sf.saxon.TransformerFactoryImpl();
+                baselineSceneTree = buildBaselineSceneTree(baselineTransformerFactory, sceneFile);
+            }
+
+            System.out.println(String.format("%-36s %12s %12s", "stylesheet", "current msec", "baseline msec"));
+            for (String stylesheetName : BENCHMARK_STYLESHEETS)
+            {
+                long currentMillis = timeStylesheet(StylesheetCache.getTemplates(stylesheetName), sceneTree);
+                String baselineResult = "-";
+                if (baselineDirectory != null)
+                {
+                    Templates baselineTemplates = compileBaseline(baselineTransformerFactory, baselineDirectory, stylesheetName);
+                    if (baselineTemplates != null)
+                    {
+                        baselineResult = Long.toString(timeStylesheet(baselineTemplates, baselineSceneTree));
+                    }
+                }
+                System.out.println(String.format("%-36s %12d %12s", stylesheetName, currentMillis, baselineResult));
+            }
+        } catch (IOException | TransformerException | net.sf.saxon.s9api.SaxonApiException e) {
+            System.out.println("*** StylesheetBenchmark failed: " + e.getLocalizedMessage());
+            System.exit(1);
+        }
+    }
+}
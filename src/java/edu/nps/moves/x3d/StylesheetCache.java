@@ -0,0 +1,341 @@
+/*
+ * Filename:     StylesheetCache.java
+ * Created:      17 OCT 2026
+ * Description:  Process-wide registry of compiled XSLT stylesheets used by Validator
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Compiles each validation stylesheet once and shares the resulting thread-safe
+ * {@link Templates} across all requests.  Each request obtains its own cheap
+ * {@link Transformer} from the cached Templates.
+ *
+ * All stylesheets are compiled against one long-lived Saxon Configuration, so that
+ * the NamePool, type caches and loaded imports are shared by every transformation
+ * in the webapp.  Saxon Configuration objects are thread-safe once set up.
+ *
+ * Hit and compile counters are kept so that console logs can confirm that
+ * nothing is recompiled once the server has warmed up.
+ *
+ * Saxon-HE 9 has no exported or serialized form of compiled stylesheets, so
+ * {@link #precompileAll()} is invoked by {@link StylesheetWarmupListener} while the
+ * webapp deploys, and by {@link #main(String[])} during the Ant build to catch
+ * stylesheet errors before packaging.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public final class StylesheetCache
+{
+    /** classpath directory holding all stylesheets */
+    public static final String STYLESHEET_BASE_IN_CLASSPATH = "/stylesheets/";
+
+    private static final net.sf.saxon.Configuration saxonConfiguration = new net.sf.saxon.Configuration();
+
+    private static final net.sf.saxon.TransformerFactoryImpl saxonTransformerFactory;
+
+    private static final net.sf.saxon.s9api.Processor saxonProcessor;
+
+    static
+    {
+        saxonConfiguration.setURIResolver(new StylesheetResolver());
+        saxonTransformerFactory = new net.sf.saxon.TransformerFactoryImpl(saxonConfiguration);
+        saxonProcessor          = new net.sf.saxon.s9api.Processor(saxonConfiguration);
+    }
+
+    /** stylesheets used by Validator, in order of use */
+    public static final String[] VALIDATION_STYLESHEETS = {
+        "X3dToX3dvClassicVrmlEncoding.xslt", // imports X3dToVrml97.xslt
+        "X3dSchematronValidityChecks.xslt",
+        "SvrlReportText.xslt",
+        "X3dTidy.xslt",
+        "X3dToXhtml.xslt"
+    };
+
+    private static final Map<String, Templates> templatesMap = new ConcurrentHashMap<>();
+
+    /** Stylesheets compiled with tracing for XsltProfiler, created only when profiling is first requested */
+    private static class ProfilingHolder
+    {
+        static final net.sf.saxon.Configuration profilingConfiguration = new net.sf.saxon.Configuration();
+
+        static final net.sf.saxon.TransformerFactoryImpl profilingTransformerFactory;
+
+        static final Map<String, Templates> profilingTemplatesMap = new ConcurrentHashMap<>();
+
+        static
+        {
+            // template tracing is a Configuration setting, and Saxon only transforms trees built by the same
+            // Configuration, so profiled transformations parse the scene themselves rather than using buildSceneTree
+            profilingConfiguration.setURIResolver(new StylesheetResolver());
+            profilingConfiguration.setCompileWithTracing(true);
+            profilingTransformerFactory = new net.sf.saxon.TransformerFactoryImpl(profilingConfiguration);
+        }
+    }
+
+    private static final AtomicLong hitCount         = new AtomicLong();
+    private static final AtomicLong compileCount     = new AtomicLong();
+    private static final AtomicLong compileTimeNanos = new AtomicLong();
+
+    private StylesheetCache()
+    {
+        // static utility class, no instances
+    }
+
+    /**
+     * Get compiled stylesheet, compiling it on first use only.
+     *
+     * @param stylesheetName file name of stylesheet found in classpath directory /stylesheets/
+     * @return shareable compiled stylesheet
+     * @throws TransformerConfigurationException if stylesheet is not found or fails to compile
+     */
+    public static Templates getTemplates(String stylesheetName) throws TransformerConfigurationException
+    {
+        Templates templates = templatesMap.get(stylesheetName);
+        if (templates != null)
+        {
+            hitCount.incrementAndGet();
+            return templates;
+        }
+        synchronized (templatesMap) // only compile once, even when first requests arrive simultaneously
+        {
+            templates = templatesMap.get(stylesheetName);
+            if (templates != null)
+            {
+                hitCount.incrementAndGet();
+                return templates;
+            }
+            templates = compile(stylesheetName, saxonTransformerFactory);
+            templatesMap.put(stylesheetName, templates);
+        }
+        return templates;
+    }
+
+    /**
+     * Get new per-request Transformer for a cached stylesheet.
+     *
+     * @param stylesheetName file name of stylesheet found in classpath directory /stylesheets/
+     * @return new Transformer, not shareable between threads
+     * @throws TransformerConfigurationException if stylesheet is not found or fails to compile
+     */
+    public static Transformer newTransformer(String stylesheetName) throws TransformerConfigurationException
+    {
+        return getTemplates(stylesheetName).newTransformer();
+    }
+
+    /**
+     * Get new per-request Transformer for a stylesheet compiled with tracing enabled,
+     * with an {@link XsltProfiler} attached that reports template hotspots to the
+     * console when the transformation completes.  Traced stylesheets run noticeably
+     * slower and are cached separately from normal ones.  They belong to a separate
+     * Configuration, so transform a parsable source rather than a {@link #buildSceneTree(File)} tree.
+     *
+     * @param stylesheetName file name of stylesheet found in classpath directory /stylesheets/
+     * @return new Transformer with profiler attached, not shareable between threads
+     * @throws TransformerConfigurationException if stylesheet is not found or fails to compile
+     */
+    public static Transformer newProfilingTransformer(String stylesheetName) throws TransformerConfigurationException
+    {
+        Templates templates;
+        synchronized (ProfilingHolder.profilingTemplatesMap)
+        {
+            templates = ProfilingHolder.profilingTemplatesMap.get(stylesheetName);
+            if (templates == null)
+            {
+                templates = compile(stylesheetName, ProfilingHolder.profilingTransformerFactory);
+                ProfilingHolder.profilingTemplatesMap.put(stylesheetName, templates);
+            }
+        }
+        Transformer transformer = templates.newTransformer();
+        ((net.sf.saxon.Controller) transformer).addTraceListener(new XsltProfiler(stylesheetName));
+        return transformer;
+    }
+
+    /**
+     * Compile all validation stylesheets ahead of the first request.
+     * Problems are reported on the console rather than thrown, so that one missing
+     * stylesheet does not prevent the others from being prepared.
+     *
+     * @return number of stylesheets that failed to compile
+     */
+    public static int precompileAll()
+    {
+        int failureCount = 0;
+        for (String stylesheetName : VALIDATION_STYLESHEETS)
+        {
+            try {
+                getTemplates(stylesheetName);
+            } catch (TransformerConfigurationException tce) {
+                failureCount++;
+                System.out.println("*** StylesheetCache unable to precompile " + stylesheetName + ": " + tce.getLocalizedMessage());
+            }
+        }
+        System.out.println(getStatistics());
+        return failureCount;
+    }
+
+    /**
+     * @return the single Saxon Configuration shared by all stylesheets and transformations
+     */
+    public static net.sf.saxon.Configuration getConfiguration()
+    {
+        return saxonConfiguration;
+    }
+
+    /**
+     * @return the single Saxon TransformerFactory bound to the shared Configuration
+     */
+    public static net.sf.saxon.TransformerFactoryImpl getTransformerFactory()
+    {
+        return saxonTransformerFactory;
+    }
+
+    /**
+     * Parse a scene once into an in-memory Saxon tree (TinyTree) built with the shared
+     * Configuration.  The resulting node can be passed as the source of any number of
+     * transformations using cached stylesheets, avoiding a reparse for each stage.
+     * External DTD references are resolved by {@link X3dSpecificationResolver}.
+     *
+     * @param sceneFile X3D file to parse
+     * @return document node of parsed scene, usable as a transformation Source
+     * @throws net.sf.saxon.s9api.SaxonApiException if the scene cannot be parsed
+     */
+    public static Source buildSceneTree(File sceneFile) throws net.sf.saxon.s9api.SaxonApiException
+    {
+        return buildSceneTree(new InputSource(sceneFile.toURI().toString()));
+    }
+
+    /**
+     * Parse a scene once into an in-memory Saxon tree, as {@link #buildSceneTree(File)}
+     * but from input already in memory.
+     *
+     * @param sceneInput X3D content to parse, with system identifier set for relative references
+     * @return document node of parsed scene, usable as a transformation Source
+     * @throws net.sf.saxon.s9api.SaxonApiException if the scene cannot be parsed
+     */
+    public static Source buildSceneTree(InputSource sceneInput) throws net.sf.saxon.s9api.SaxonApiException
+    {
+        try (SaxParserPool.PooledParser pooledParser = SaxParserPool.borrow(SaxParserPool.Configuration.NAMESPACE_AWARE))
+        {
+            XMLReader xmlReader = pooledParser.getXMLReader();
+            xmlReader.setEntityResolver(new X3dSpecificationResolver()); // DOCTYPE is read from bundled copy, not network
+            SAXSource sceneSource = new SAXSource(xmlReader, sceneInput);
+            return saxonProcessor.newDocumentBuilder().build(sceneSource).getUnderlyingNode();
+        } catch (SAXException e) {
+            throw new net.sf.saxon.s9api.SaxonApiException(e);
+        }
+    }
+
+    private static Templates compile(String stylesheetName, net.sf.saxon.TransformerFactoryImpl transformerFactory) throws TransformerConfigurationException
+    {
+        StreamSource stylesheetSource = StylesheetResolver.getStylesheetSource(stylesheetName);
+        if (stylesheetSource == null)
+        {
+            throw new TransformerConfigurationException("stylesheet " + STYLESHEET_BASE_IN_CLASSPATH + stylesheetName + " not found in classpath");
+        }
+        System.out.println("StylesheetCache compiling " + stylesheetName + "...");
+        long startTime = System.nanoTime();
+
+        Templates templates = transformerFactory.newTemplates(stylesheetSource);
+
+        long elapsedTime = System.nanoTime() - startTime;
+        compileCount.incrementAndGet();
+        compileTimeNanos.addAndGet(elapsedTime);
+        System.out.println("StylesheetCache compiled " + stylesheetName + " in " + (elapsedTime / 1000000) + " msec");
+        return templates;
+    }
+
+    /**
+     * @return number of requests satisfied by previously compiled stylesheets
+     */
+    public static long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of stylesheet compilations performed, should not grow after warm-up
+     */
+    public static long getCompileCount()
+    {
+        return compileCount.get();
+    }
+
+    /**
+     * @return total time spent compiling stylesheets, in milliseconds
+     */
+    public static long getCompileTimeMillis()
+    {
+        return compileTimeNanos.get() / 1000000;
+    }
+
+    /**
+     * @return one-line summary of cache counters for console logging
+     */
+    public static String getStatistics()
+    {
+        return "StylesheetCache: " + templatesMap.size() + " stylesheets, " + getHitCount() + " hits, "
+                + getCompileCount() + " compiles, " + getCompileTimeMillis() + " msec total compile time";
+    }
+
+    /**
+     * Build-time check that every validation stylesheet compiles.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        int failureCount = precompileAll();
+        if (failureCount > 0)
+        {
+            System.out.println("*** " + failureCount + " of " + VALIDATION_STYLESHEETS.length + " validation stylesheets failed to compile");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Filename:     StylesheetResolver.java
+ * Created:      17 OCT 2026
+ * Description:  Resolve stylesheet imports and includes from classpath directory /stylesheets/
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.net.URL;
+import javax.xml.transform.Source;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Single stateless resolver for every stylesheet found under classpath directory
+ * /stylesheets/, replacing the per-stage lambdas that each special-cased one import.
+ * Any href whose final path segment names a bundled stylesheet resolves to that
+ * bundled copy, regardless of base URI.  Other references return null so that
+ * Saxon applies its standard resolution.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class StylesheetResolver implements URIResolver
+{
+    /**
+     * Get classpath source for a bundled stylesheet, with system identifier set so
+     * that relative references found inside it can be resolved in turn.
+     *
+     * @param stylesheetName file name of stylesheet found in classpath directory /stylesheets/
+     * @return stylesheet source, or null if not bundled
+     */
+    public static StreamSource getStylesheetSource(String stylesheetName)
+    {
+        URL stylesheetUrl = StylesheetResolver.class.getResource(StylesheetCache.STYLESHEET_BASE_IN_CLASSPATH + stylesheetName);
+        if (stylesheetUrl == null)
+        {
+            return null;
+        }
+        return new StreamSource(stylesheetUrl.toExternalForm());
+    }
+
+    @Override
+    public Source resolve(String href, String base)
+    {
+        if ((href == null) || href.isEmpty())
+        {
+            return null;
+        }
+        String stylesheetName = href.substring(href.lastIndexOf('/') + 1);
+        if (!stylesheetName.endsWith(".xslt") && !stylesheetName.endsWith(".xsl"))
+        {
+            return null;
+        }
+        StreamSource stylesheetSource = getStylesheetSource(stylesheetName);
+        if (stylesheetSource == null)
+        {
+            System.out.println("StylesheetResolver unable to find href = " + href + " base = " + base);
+        }
+        return stylesheetSource;
+    }
+}
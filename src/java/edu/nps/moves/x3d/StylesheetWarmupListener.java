@@ -0,0 +1,80 @@
+/*
+ * Filename:     StylesheetWarmupListener.java
+ * Created:      17 OCT 2026
+ * Description:  Compile validation stylesheets while the webapp deploys
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Compiles all validation stylesheets and X3D schemas, and loads X3D DTDs into the
+ * shared grammar pool, during webapp startup.
+ * Tomcat does not report the context as started until this listener returns, so the
+ * first request after a redeploy no longer pays several seconds of stylesheet and
+ * schema compilation.  Cache and pool statistics are logged once warm-up completes
+ * and again at shutdown, rather than after every validation.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+@WebListener
+public class StylesheetWarmupListener implements ServletContextListener
+{
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent)
+    {
+        System.out.println("StylesheetWarmupListener precompiling validation stylesheets...");
+        StylesheetCache.precompileAll();
+        System.out.println("StylesheetWarmupListener precompiling X3D schemas...");
+        X3dSchemaCache.precompileAll();
+        System.out.println("StylesheetWarmupListener loading X3D DTDs into shared grammar pool...");
+        X3dGrammarPool.warmUp();
+        System.out.println(SaxParserPool.getStatistics());
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent servletContextEvent)
+    {
+        // nothing to release, cached stylesheets and schemas are garbage collected with the webapp class loader
+        // lifetime counters show whether anything recompiled after warm-up and whether parser pools were too small
+        System.out.println(StylesheetCache.getStatistics());
+        System.out.println(X3dSchemaCache.getStatistics());
+        System.out.println(X3dGrammarPool.getStatistics());
+        System.out.println(SaxParserPool.getStatistics());
+    }
+}
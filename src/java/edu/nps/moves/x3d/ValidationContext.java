@@ -0,0 +1,233 @@
+/*
+ * Filename:     ValidationContext.java
+ * Created:      17 OCT 2026
+ * Description:  Per-validation state: report under construction, step counter and temporary files
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds everything that belongs to one validation: the HTML report being assembled,
+ * the step counter numbering each check, and temporary files created along the way.
+ * Each {@link Validator} run gets its own context, so simultaneous requests never
+ * share report text or step numbers.  Closing the context deletes its temporary files.
+ *
+ * One context serves a single validation on a single thread and is not thread-safe.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+final class ValidationContext implements AutoCloseable
+{
+    private static final String GREEN_PASS = "<font color='green'><b>pass</b></font>.\n";
+
+    private final StringBuilder outputLogStringBuilder = new StringBuilder();
+
+    private int stepCount = 1;
+
+    private final List<File> temporaryFiles = new ArrayList<>();
+
+    /**
+     * @return report text accumulated since last flush
+     */
+    StringBuilder getReport()
+    {
+        return outputLogStringBuilder;
+    }
+
+    /**
+     * Append results to console log
+     *
+     * @param passName previously given name of this pass
+     * @param error whether or not an error occurred
+     */
+    void appendResults(String passName, boolean error) {
+        if (error) {
+            outputLogStringBuilder.append("<font color='red'>Error(s) detected during this validation test.\n");
+            outputLogStringBuilder.append(passName);
+            outputLogStringBuilder.append(": <b>fail</b></font>.\n");
+        } else {
+            outputLogStringBuilder.append(passName);
+            outputLogStringBuilder.append(": ");
+            outputLogStringBuilder.append(GREEN_PASS);
+        }
+    }
+
+    void appendStart(String passName, String referenceUrl) {
+        appendStart(passName, referenceUrl, "", "");
+    }
+
+    /**
+     * Append utility method
+     *
+     * @param passName include " check" in name for regular output
+     * @param referenceUrl url to reference tool performing task
+     * @param documentationName name of documentation
+     * @param documentationUrl url for documentation
+     */
+    void appendStart(String passName, String referenceUrl, String documentationName, String documentationUrl)
+    {
+        outputLogStringBuilder.append("\n<b>").append(stepCount).append(". Performing ");
+        stepCount++;
+        if (referenceUrl.isEmpty()) {
+            outputLogStringBuilder.append(passName);
+        } else {
+            outputLogStringBuilder.append("<a href='").append(referenceUrl.trim()).append("' target='X3dValidatorReference' title='test description or source'>");
+            if (passName.contains(" check")) {
+                outputLogStringBuilder.append(passName.substring(0, passName.indexOf(" check"))); // first part
+                outputLogStringBuilder.append("</a>");
+                outputLogStringBuilder.append(passName.substring(passName.indexOf(" check")));   // last part
+            } else {
+                outputLogStringBuilder.append("</a>");
+            }
+            if (!documentationName.isEmpty()) {
+                outputLogStringBuilder.append(" (<a href='").append(documentationUrl.trim()).append("' target='X3dValidatorReference' title='test reference'>");
+                outputLogStringBuilder.append(documentationName); // first part
+                outputLogStringBuilder.append("</a>) ");
+            }
+        }
+        outputLogStringBuilder.append("...</b>\n");
+    }
+    /**
+     * Append utility method
+     *
+     * @param statement Preface prose
+     * @param documentationName name of documentation
+     * @param documentationUrl url for documentation
+     */
+    void appendStatement(String statement, String documentationName, String documentationUrl)
+    {
+        if (!statement.isEmpty()) 
+        {
+            outputLogStringBuilder.append(statement);
+        }
+        if (!documentationName.isEmpty() && !documentationUrl.isEmpty()) 
+        {
+                outputLogStringBuilder.append("<a href='").append(documentationUrl.trim()).append("' target='_blank'>");
+                outputLogStringBuilder.append(documentationName.trim()); // first part
+                outputLogStringBuilder.append("</a>");
+        }
+        else if (!documentationName.isEmpty()) 
+        {
+            outputLogStringBuilder.append(documentationName);
+        }
+        else if (!documentationUrl.isEmpty()) 
+        {
+                outputLogStringBuilder.append("<a href='").append(documentationUrl.trim()).append("' target='_blank'>");
+                outputLogStringBuilder.append(documentationUrl.trim()); // first part
+                outputLogStringBuilder.append("</a>");
+        }
+        outputLogStringBuilder.append("\n");
+    }
+
+    @SuppressWarnings("CallToPrintStackTrace")
+    void catchResponse(Throwable t, String passName) {
+        t.printStackTrace();
+        outputLogStringBuilder.append("<font color='red'>Internal error caught:\n");
+        outputLogStringBuilder.append(t.getClass().getName());
+        outputLogStringBuilder.append(": ");
+        outputLogStringBuilder.append(t.getLocalizedMessage());
+        // https://stackoverflow.com/questions/1149703/how-can-i-convert-a-stack-trace-to-a-string
+        try {
+            StringWriter sw = new StringWriter();
+            PrintWriter pw = new PrintWriter(sw);
+            t.printStackTrace(pw);
+            outputLogStringBuilder.append(sw.toString());
+        } catch (Exception e) {
+            System.out.println(outputLogStringBuilder.toString());
+            System.out.println();
+            System.out.println("*** Validator.catchResponse() secondary exception while handling prior exception...");
+            e.printStackTrace(System.out);
+        }
+        outputLogStringBuilder.append("</font>\n");
+        appendResults(passName, true);
+        
+        System.out.println(outputLogStringBuilder.toString());
+        System.out.println();
+        System.out.println("*** Validator.catchResponse() handling exception...");
+    }
+
+    /**
+     * Write accumulated report text to output and clear it, so that large results
+     * can be streamed rather than held in memory.
+     *
+     * @param outputWriter destination for report
+     * @throws IOException if writing fails
+     */
+    void flushReport(Writer outputWriter) throws IOException {
+        outputWriter.append(outputLogStringBuilder);
+        outputLogStringBuilder.setLength(0);
+        outputWriter.flush();
+    }
+
+    /**
+     * Create a temporary file that is deleted when this context is closed.
+     *
+     * @param prefix file name prefix, at least three characters
+     * @param suffix file name suffix
+     * @return new empty file
+     * @throws IOException if file cannot be created
+     */
+    File createTemporaryFile(String prefix, String suffix) throws IOException
+    {
+        File temporaryFile = File.createTempFile(prefix, suffix); // TODO permissions on server
+        temporaryFile.deleteOnExit(); // in case process ends before context is closed
+        temporaryFiles.add(temporaryFile);
+        return temporaryFile;
+    }
+
+    /**
+     * Delete temporary files created for this validation.
+     */
+    @Override
+    public void close()
+    {
+        for (File temporaryFile : temporaryFiles)
+        {
+            if (temporaryFile.exists() && !temporaryFile.delete())
+            {
+                System.out.println("*** ValidationContext unable to delete " + temporaryFile);
+            }
+        }
+        temporaryFiles.clear();
+    }
+}
@@ -39,27 +39,31 @@
 package edu.nps.moves.x3d;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.regex.Matcher;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Pattern;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.*;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
 import net.sf.saxon.serialize.MessageWarner;
-import org.apache.xerces.jaxp.JAXPConstants;
 import org.web3d.x3d.tools.X3dDoctypeChecker;
-import org.web3d.x3d.tools.X3dValuesRegexChecker;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
-import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.DefaultHandler2;
 
 /**
  * @author Mike Bailey, jmbailey@nps.edu
@@ -70,139 +74,137 @@ import org.xml.sax.helpers.DefaultHandler;
  */
 public class Validator {
 
-    private static final String GREEN_PASS = "<font color='green'><b>pass</b></font>.\n";
+    private static final String REFERENCE_X3DOM      = "http://www.x3dom.org";
+    private static final String REFERENCE_X_ITE_CODE = "https://create3000.github.io/code/x_ite/latest/dist/";
 
-    private static StringBuilder outputLogStringBuilder;
+    // source <script type="text/javascript" src="http://www.x3dom.org/download/dev/x3dom-full.js"/>
+    // regex  <script\s+type=['|"]text/javascript['|"]\s+src=['|"]http://www.x3dom.org[^\s]*.js['|"]\s*[/|>\s*</script]>
+    private static final Pattern PATTERN_X3DOM_JS = Pattern.compile(
+            "<script\\s+type=['|\"]text/javascript['|\"]\\s+src=['|\"]" + REFERENCE_X3DOM + "[^\\s]*.js['|\"]\\s*/>");
 
-    // TODO debug
-    private static final boolean prettyPrintX3dTidyOutputFile = false; // alternatively just use original validationFile
+    // Java Regular Expression Tester https://www.freeformatter.com/java-regex-tester.html
+    // NetbeansRegexPlugin - plugin detail http://plugins.netbeans.org/plugin/63405
+    // source <link rel="stylesheet" type="text/css" href="http://www.x3dom.org/download/dev/x3dom.css"/>
+    // regex  <link\s+rel=['|"]stylesheet['|"]\s+type=['|"]text/css['|"]\s+href=['|"]http://www.x3dom.org[^\s]*.css['|"]\s*/>
+    private static final Pattern PATTERN_X3DOM_CSS = Pattern.compile(
+            "<link\\s+rel=['|\"]stylesheet['|\"]\\s+type=['|\"]text/css['|\"]\\s+href=['|\"]" + REFERENCE_X3DOM + "[^\\s]*.css['|\"]\\s*/>");
 
-    private static File x3dTidyOutputFile;
+    // source <link rel="stylesheet" type="text/css" href="http://code.create3000.de/x_ite/latest/dist/x_ite.css"/>
+    // regex  <link\s+rel=['|"]stylesheet['|"]\s+type=['|"]text/css['|"]\s+href=['|"]http://code.create3000.de/x_ite[^\s]*.css['|"]\s*/>
+    private static final Pattern PATTERN_X_ITE_CSS = Pattern.compile(
+            "<link\\s+rel=['|\"]stylesheet['|\"]\\s+type=['|\"]text/css['|\"]\\s+href=['|\"]" + REFERENCE_X_ITE_CODE + "[^\\s]*x_ite.css['|\"]\\s*/>");
+
+    // source  <script type="text/javascript" src="http://code.create3000.de/x_ite/latest/dist/x_ite.min.js"></script>
+    // regex  <cript\s+type=['|"]text/javascript['|"]\s+src=['|"]http://code.create3000.de/x_ite[^\s]*.js['|"]\s*>\s*</script>
+    private static final Pattern PATTERN_X_ITE_JS = Pattern.compile(
+            "<script\\s+type=['|\"]text/javascript['|\"]\\s+src=['|\"]" + REFERENCE_X_ITE_CODE + "[^\\s]*x_ite.min.js['|\"]\\s*>\\s*</script>");
+
+    /** opt-in template-level XSLT profiling, reports hotspot tables on console; enable with -DX3dValidator.profileStylesheets=true */
+    private static volatile boolean profileStylesheets = Boolean.getBoolean("X3dValidator.profileStylesheets");
+
+    /** opt-in numeric checks of X3D numeric fields only, during the single validation parse rather than over raw scene text; enable with -DX3dValidator.fieldTypeNumericCheck=true */
+    private static volatile boolean fieldTypeNumericCheck = Boolean.getBoolean("X3dValidator.fieldTypeNumericCheck");
 
     /**
-     * Append results to console log
+     * Enable or disable field-type-aware numeric checks.  When enabled, malformed floats
+     * and leading zeroes are only sought in attributes whose X3D field type is numeric, so
+     * comments, Script bodies, meta content and string fields no longer produce findings.
+     * Scenes with an unsupported X3D version or that are not well formed are still checked
+     * with regular expressions over the whole scene text.
      *
-     * @param passName previously given name of this pass
-     * @param error whether or not an error occurred
+     * @param newValue whether to check numeric fields during the validation parse
      */
-    private static void appendResults(String passName, boolean error) {
-        if (error) {
-            outputLogStringBuilder.append("<font color='red'>Error(s) detected during this validation test.\n");
-            outputLogStringBuilder.append(passName);
-            outputLogStringBuilder.append(": <b>fail</b></font>.\n");
-        } else {
-            outputLogStringBuilder.append(passName);
-            outputLogStringBuilder.append(": ");
-            outputLogStringBuilder.append(GREEN_PASS);
+    public static void setFieldTypeNumericCheck(boolean newValue) {
+        fieldTypeNumericCheck = newValue;
+    }
+
+    /**
+     * Enable or disable template-level profiling of validation stylesheets.
+     * Profiled stylesheets run slower, so this is intended for diagnosing problem scenes.
+     *
+     * @param newValue whether to attach XsltProfiler to each XSLT stage
+     */
+    public static void setProfileStylesheets(boolean newValue) {
+        profileStylesheets = newValue;
+    }
+
+    /**
+     * Get per-request Transformer for an XSLT stage, profiled if requested
+     *
+     * @param stylesheetName file name of stylesheet found in classpath directory /stylesheets/
+     * @return new Transformer
+     */
+    private static Transformer newStageTransformer(String stylesheetName) throws TransformerConfigurationException {
+        if (profileStylesheets) {
+            return StylesheetCache.newProfilingTransformer(stylesheetName);
         }
+        return StylesheetCache.newTransformer(stylesheetName);
     }
 
-    private static void appendStart(String passName, String referenceUrl) {
-        appendStart(passName, referenceUrl, "", "");
+    /** report, step counter and temporary files of this validation only */
+    private final ValidationContext context;
+
+    /** report text accumulated since last flush, held by context */
+    private final StringBuilder outputLogStringBuilder;
+
+    private Validator(ValidationContext context)
+    {
+        this.context = context;
+        this.outputLogStringBuilder = context.getReport();
     }
-    private static int stepCount = 1;
 
     /**
-     * Append utility method
+     * Perform all validation checks and return the report.
+     * Safe to call from simultaneous requests, each validation has its own state.
      *
-     * @param passName include " check" in name for regular output
-     * @param referenceUrl url to reference tool performing task
-     * @param documentationName name of documentation
-     * @param documentationUrl url for documentation
+     * @param validationFile X3D or HTML file to check
+     * @return HTML-formatted validation report
      */
-    private static void appendStart(String passName, String referenceUrl, String documentationName, String documentationUrl)
+    public static String validate(File validationFile)
     {
-        outputLogStringBuilder.append("\n<b>").append(stepCount).append(". Performing ");
-        stepCount++;
-        if (referenceUrl.isEmpty()) {
-            outputLogStringBuilder.append(passName);
-        } else {
-            outputLogStringBuilder.append("<a href='").append(referenceUrl.trim()).append("' target='X3dValidatorReference' title='test description or source'>");
-            if (passName.contains(" check")) {
-                outputLogStringBuilder.append(passName.substring(0, passName.indexOf(" check"))); // first part
-                outputLogStringBuilder.append("</a>");
-                outputLogStringBuilder.append(passName.substring(passName.indexOf(" check")));   // last part
-            } else {
-                outputLogStringBuilder.append("</a>");
-            }
-            if (!documentationName.isEmpty()) {
-                outputLogStringBuilder.append(" (<a href='").append(documentationUrl.trim()).append("' target='X3dValidatorReference' title='test reference'>");
-                outputLogStringBuilder.append(documentationName); // first part
-                outputLogStringBuilder.append("</a>) ");
+        StringWriter reportStringWriter = new StringWriter();
+        try (ValidationContext context = new ValidationContext())
+        {
+            try {
+                new Validator(context).run(validationFile, reportStringWriter);
+            } catch (IOException ioe) {
+                // not expected when writing to StringWriter
+                context.catchResponse(ioe, "Validation report");
+                reportStringWriter.append(context.getReport());
             }
         }
-        outputLogStringBuilder.append("...</b>\n");
+        return reportStringWriter.toString();
     }
+
     /**
-     * Append utility method
+     * Perform all validation checks, writing the report progressively to output.
+     * The XHTML pretty-print listing is streamed directly to outputWriter so that
+     * memory use does not grow with scene size.
+     * Safe to call from simultaneous requests, each validation has its own state.
      *
-     * @param statement Preface prose
-     * @param documentationName name of documentation
-     * @param documentationUrl url for documentation
+     * @param validationFile X3D or HTML file to check
+     * @param outputWriter destination for HTML-formatted validation report, not closed
+     * @throws IOException if writing to outputWriter fails
      */
-    private static void appendStatement(String statement, String documentationName, String documentationUrl)
+    public static void validate(File validationFile, Writer outputWriter) throws IOException
     {
-        if (!statement.isEmpty()) 
-        {
-            outputLogStringBuilder.append(statement);
-        }
-        if (!documentationName.isEmpty() && !documentationUrl.isEmpty()) 
+        try (ValidationContext context = new ValidationContext())
         {
-                outputLogStringBuilder.append("<a href='").append(documentationUrl.trim()).append("' target='_blank'>");
-                outputLogStringBuilder.append(documentationName.trim()); // first part
-                outputLogStringBuilder.append("</a>");
+            new Validator(context).run(validationFile, outputWriter);
         }
-        else if (!documentationName.isEmpty()) 
-        {
-            outputLogStringBuilder.append(documentationName);
-        }
-        else if (!documentationUrl.isEmpty()) 
-        {
-                outputLogStringBuilder.append("<a href='").append(documentationUrl.trim()).append("' target='_blank'>");
-                outputLogStringBuilder.append(documentationUrl.trim()); // first part
-                outputLogStringBuilder.append("</a>");
-        }
-        outputLogStringBuilder.append("\n");
-    }
-
-    @SuppressWarnings("CallToPrintStackTrace")
-    private static void catchResponse(Throwable t, String passName) {
-        t.printStackTrace();
-        outputLogStringBuilder.append("<font color='red'>Internal error caught:\n");
-        outputLogStringBuilder.append(t.getClass().getName());
-        outputLogStringBuilder.append(": ");
-        outputLogStringBuilder.append(t.getLocalizedMessage());
-        // https://stackoverflow.com/questions/1149703/how-can-i-convert-a-stack-trace-to-a-string
-        try {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            t.printStackTrace(pw);
-            outputLogStringBuilder.append(sw.toString());
-        } catch (Exception e) {
-            System.out.println(outputLogStringBuilder.toString());
-            System.out.println();
-            System.out.println("*** Validator.catchResponse() secondary exception while handling prior exception...");
-            e.printStackTrace(System.out);
-        }
-        outputLogStringBuilder.append("</font>\n");
-        appendResults(passName, true);
-        
-        System.out.println(outputLogStringBuilder.toString());
-        System.out.println();
-        System.out.println("*** Validator.catchResponse() handling exception...");
     }
 
+    /**
+     * Perform all validation checks once, using this validator's context.
+     *
+     * @param validationFile X3D or HTML file to check
+     * @param outputWriter destination for HTML-formatted validation report, not closed
+     * @throws IOException if writing to outputWriter fails
+     */
     @SuppressWarnings("CallToPrintStackTrace")
-    public static String validate(File validationFile)
+    private void run(File validationFile, Writer outputWriter) throws IOException
     {
-        SAXParserFactory saxParserFactory;
-        SAXParser saxParser;
         ThisSAXHandler thisSAXHandler;
-        StreamSource xmlStreamSource;
-        StreamSource xslStreamSource;
-        StreamResult streamResult;
-        net.sf.saxon.Configuration saxonConfiguration;
-        TransformerFactory saxonTransformerFactory;
         Transformer saxonTransformer;
         ThisTransformListener thisTransformListener;
         boolean foundHTML   = false;
@@ -211,11 +213,10 @@ public class Validator {
         boolean foundCobweb = false;
         String htmlFileText = new String();
         String x3dFileText  = new String();
-        String htmlFileTextLower = new String();
+        HtmlHostPageScanner hostPageScanner = new HtmlHostPageScanner(htmlFileText);
+        List<String> additionalX3dIslands = Collections.emptyList(); // further scenes on same HTML page
 
-        outputLogStringBuilder = new StringBuilder(); // clear prior results
         String passName = new String();
-        stepCount = 1; // reset index
 
         // reference urls also maintained at   
         String referenceQualityAssurance    = "http://www.web3d.org/x3d/content/examples/X3dResources.html#QualityAssurance";
@@ -229,17 +230,14 @@ public class Validator {
         String referenceUrlRegex            = "http://www.web3d.org/pipermail/x3d-public_web3d.org/2012-March/001950.html";
         String referenceUrlPrettyPrintHtml  = "http://www.web3d.org/x3d/stylesheets/X3dToXhtml.xslt";
                     
-        String referenceX3DOM       = "http://www.x3dom.org";
+        String referenceX3DOM       = REFERENCE_X3DOM;
         String referenceX_ITE_site  = "https://github.com/create3000/x_ite/wiki";
-        String referenceX_ITE_code  = "https://create3000.github.io/code/x_ite/latest/dist/";
         String referenceCobweb      = "http://create3000.de/x_ite"; // legacy; not https
 
         // TODO version awareness
         String referenceUrlX3dSchemaDocumentation = "http://www.web3d.org/specifications/X3dSchemaDocumentation3.3/x3d-3.3.html";
         String referenceUrlX3dDtdDocumentation    = "http://www.web3d.org/specifications/X3dDoctypeDocumentation3.3.html";
 
-        final String xsdBaseInClassPath = "/stylesheets/";
-
         outputLogStringBuilder.append("\n--------- Commence validation checks for <b>");
         outputLogStringBuilder.append(validationFile.getName());
         outputLogStringBuilder.append("</b> ---------\n");
@@ -249,109 +247,166 @@ public class Validator {
         // create validationFileExcerpt to allow processing of HTML files containing X3D content
         String validationFileX3dName;
         File validationFileX3D = validationFile; // must initialize
+        SceneSource htmlScene = null; // file as received, read once
+        SceneSource x3dScene  = null; // X3D content shared by all subsequent stages, with https specification references for parsing
+        Charset     x3dCharset = StandardCharsets.UTF_8;
         
         try {
 
-            byte[] fileByteArray = Files.readAllBytes(Paths.get(validationFile.getAbsolutePath()));
-            htmlFileText      = new String(fileByteArray);
-            htmlFileTextLower = htmlFileText.toLowerCase();
-            foundHTML   = htmlFileText.contains("<html") || htmlFileText.contains("<HTML");
-            foundX3DOM  = htmlFileText.contains("x3dom.");
-            foundX_ITE  = htmlFileText.contains("x_ite.") || htmlFileText.toLowerCase().contains("<x3dcanvas ");
-            foundCobweb = htmlFileText.contains("cobweb.");
+            htmlScene         = SceneSource.fromFile(validationFile.getAbsoluteFile(), false); // opened read-only, not mapped so that caller can delete file afterwards on any platform
+            htmlFileText      = htmlScene.getText();
+            hostPageScanner   = new HtmlHostPageScanner(htmlFileText); // single pass finds everything below
+            foundHTML   = hostPageScanner.isHtml();
+            foundX3DOM  = hostPageScanner.isX3dom();
+            foundX_ITE  = hostPageScanner.isX_ITE();
+            foundCobweb = hostPageScanner.isCobweb();
             if (foundHTML || foundX3DOM || foundX_ITE || foundCobweb)
                outputLogStringBuilder.append("foundHTML=").append(foundHTML).append(", foundX3DOM=").append(foundX3DOM).append(", foundX_ITE=").append(foundX_ITE).append(", foundCobweb=").append(foundCobweb).append("\n");
-            x3dFileText = new String(fileByteArray); // not yet excerpted
+            x3dFileText = htmlFileText; // not yet excerpted
             
-            if (foundX_ITE && x3dFileText.contains("<X3DCanvas ")) // show X3DCanvas if present
+            String x3dCanvasTag = hostPageScanner.getX3dCanvasTag();
+            if (foundX_ITE && (x3dCanvasTag != null)) // show X3DCanvas if present
             {
-                int startIndex = x3dFileText.indexOf("<X3DCanvas");
-                int deltaIndex = x3dFileText.substring(startIndex).indexOf(">");
                 outputLogStringBuilder.append("\n").append("Referenced model ").append(
-                        x3dFileText.substring(startIndex,startIndex+deltaIndex+1).replaceAll("<","&lt;").replaceAll(">","&gt;"))
+                        x3dCanvasTag.replace("<","&lt;").replace(">","&gt;"))
                         .append(" can be checked separately").append("\n").append("\n");
             }
             
-            if (x3dFileText.contains("http://www.web3d.org/specifications/x3d-"))
+            if (hostPageScanner.hasHttpSpecificationReference())
             {
                 // avoid problem with Sax unable to follow http->https redirect by web3d.org
-                int startPositionDTD = x3dFileText.indexOf("http://www.web3d.org/specifications/x3d-");
-                String x3dDtdUrlExtract = x3dFileText.substring(startPositionDTD, x3dFileText.indexOf(".dtd") + 4);
-                if   (!x3dDtdUrlExtract.isEmpty())
+                String x3dDtdUrlExtract = hostPageScanner.getHttpDtdReference();
+                if   ((x3dDtdUrlExtract != null) && !x3dDtdUrlExtract.isEmpty())
                     outputLogStringBuilder.append("substituting <i>https</i> to avoid redirection when checking XML DOCTYPE at ")
                              .append(x3dDtdUrlExtract).append("\n");
-                int startPositionSchema = x3dFileText.indexOf("xsd:noNamespaceSchemaLocation=") + "xsd:noNamespaceSchemaLocation=".length() + 1;
-                String x3dSchemaUrlExtract = x3dFileText.substring(startPositionSchema, x3dFileText.indexOf(".xsd") + 4);
-                if   (!x3dSchemaUrlExtract.isEmpty())
+                String x3dSchemaUrlExtract = hostPageScanner.getSchemaLocationReference();
+                if   ((x3dSchemaUrlExtract != null) && !x3dSchemaUrlExtract.isEmpty())
                     outputLogStringBuilder.append("substituting <i>https</i> to avoid redirection when checking XML Schema url at ")
                              .append(x3dSchemaUrlExtract).append("\n");
-                x3dFileText = x3dFileText.replaceAll("http://www.web3d.org/specifications/x3d-","https://www.web3d.org/specifications/x3d-");
             }
+            List<String> x3dIslands = hostPageScanner.getX3dIslands();
             if (foundHTML) {
                 // https://stackoverflow.com/questions/876816/open-temp-file-in-java
                 validationFileX3dName = validationFile.getName().substring(0, validationFile.getName().lastIndexOf("."));
                 validationFileX3dName += "Excerpt";
-                validationFileX3D = File.createTempFile(validationFileX3dName, ".x3d"); // TODO permissions on server
-                validationFileX3D.deleteOnExit();
+                validationFileX3D = context.createTemporaryFile(validationFileX3dName, ".x3d");
             }
-            // remove first <X3D> block
-            String x3dFileTextLowerCase = x3dFileText.toLowerCase();
-            if (foundHTML && (x3dFileTextLowerCase.contains("<x3d "))) // avoid <X3DCanvas 
+            // excerpt first <X3D> island, any further islands are validated separately afterwards
+            if (foundHTML && !x3dIslands.isEmpty()) // avoid <X3DCanvas 
             {
-                if      ((x3dFileTextLowerCase.contains("</x3d")))
-                          x3dFileText = x3dFileText.substring(x3dFileTextLowerCase.indexOf("<x3d "), x3dFileTextLowerCase.indexOf("</x3d>") + 6);
-                else
+                x3dFileText = x3dIslands.get(0);
+                if (hostPageScanner.isLastIslandUnclosed() && (x3dIslands.size() == 1))
                 {
-                          x3dFileText = x3dFileText.substring(x3dFileTextLowerCase.indexOf("<x3d "));
                           outputLogStringBuilder.append("No closing element </X3D> found").append("\n");
                 }
+                if (x3dIslands.size() > 1)
+                {
+                    outputLogStringBuilder.append("Found ").append(x3dIslands.size()).append(" <X3D> scenes, each is checked in turn").append("\n");
+                    additionalX3dIslands = x3dIslands.subList(1, x3dIslands.size());
+                }
             } 
+            x3dFileText = HtmlHostPageScanner.toHttpsSpecificationReferences(x3dFileText);
             if (foundHTML) 
             {
-                // prepend XML header and DOCTYPE to extracted X3D scene for testing
-                if (x3dFileText.contains("version='3.") || x3dFileText.contains("version=\"3."))
-                {
-                    x3dFileText = X3dDoctypeCheckerModified.XML_DECLARATION + "\n"
-                                + X3dDoctypeCheckerModified.FINAL_33_DOCTYPE + ">\n" + x3dFileText;
-                }
-                else
-                {
-                    x3dFileText = X3dDoctypeCheckerModified.XML_DECLARATION + "\n"
-                                + X3dDoctypeCheckerModified.FINAL_40_DOCTYPE + ">\n" + x3dFileText;
-                }
+                x3dFileText = prependX3dHeader(x3dFileText);
             }
-            // create corresponding file (containing only X3D) for subsequent validation
-            // https://stackoverflow.com/questions/1053467/how-do-i-save-a-string-to-a-text-file-using-java
-            try (PrintWriter printWriterX3dExcerptFile = new PrintWriter(validationFileX3D))
+            // excerpt from HTML page is given a UTF-8 XML declaration, otherwise scene keeps its own encoding
+            x3dCharset = foundHTML ? StandardCharsets.UTF_8 : htmlScene.getCharset();
+            if (foundHTML)
             {
-                 printWriterX3dExcerptFile.println(x3dFileText);
-                 printWriterX3dExcerptFile.close();
+                // create corresponding temporary file (containing only X3D) for subsequent validation
+                // https://stackoverflow.com/questions/1053467/how-do-i-save-a-string-to-a-text-file-using-java
+                try (PrintWriter printWriterX3dExcerptFile = new PrintWriter(Files.newBufferedWriter(validationFileX3D.toPath(), x3dCharset)))
+                {
+                     printWriterX3dExcerptFile.println(x3dFileText);
+                     printWriterX3dExcerptFile.close();
+                }
             }
-            outputLogStringBuilder.append("Total file length: ").append(validationFile.length()   ).append(" bytes").append("\n");
-            outputLogStringBuilder.append("X3D file length: ").append(validationFileX3D.length()).append(" bytes").append("\n");
+            // X3D file as received is never rewritten, validation holds no write handles on it
+            x3dScene = SceneSource.fromText(x3dFileText + System.lineSeparator(), x3dCharset, validationFileX3D.getAbsoluteFile()); // parsed as characters without transcoding
+            outputLogStringBuilder.append("Total file length: ").append(htmlScene.getByteLength()).append(" bytes").append("\n");
+            outputLogStringBuilder.append("X3D file length: ").append(foundHTML ? validationFileX3D.length() : x3dScene.getByteLength()).append(" bytes").append("\n");
         } 
         catch (IOException t) {
-            catchResponse(t, passName);
+            context.catchResponse(t, passName);
+        }
+        if (x3dScene == null) // retrieval failed, subsequent stages report an empty scene
+        {
+            x3dScene = SceneSource.fromText(x3dFileText, x3dCharset, validationFileX3D.getAbsoluteFile());
+        }
+        if (htmlScene == null)
+        {
+            htmlScene = x3dScene;
         }
 
         // =========================================================================
+        // single parse serves well-formed, DTD and schema checks, results are buffered
+        // so that each check still reports in its own section further below
+        StringBuilder dtdLogStringBuilder    = new StringBuilder();
+        StringBuilder schemaLogStringBuilder = new StringBuilder();
+        ThisSAXHandler dtdSAXHandler    = new ThisSAXHandler(dtdLogStringBuilder);
+        ThisSAXHandler schemaSAXHandler = new ThisSAXHandler(schemaLogStringBuilder);
+        Exception dtdException    = null; // unexpected problem, reported in DTD section
+        Exception schemaException = null; // unexpected problem, reported in schema section
+        SAXException schemaLoadException = null; // cached schema could not be read or compiled, reported as finding in schema section
+        String x3dVersion = X3dSchemaCache.getX3dVersion(x3dFileText);
+        Schema x3dSchema  = null;
+        X3dNumericFieldChecker numericFieldChecker = null; // field-type-aware alternative to regex checks, if enabled
         if (!foundX_ITE)
         {
+            thisSAXHandler = new ThisSAXHandler(outputLogStringBuilder);
+            try {
+                // cached schema only when hint names a published X3D schema, otherwise validation follows the hint as written
+                x3dSchema = X3dSchemaCache.getSchema(X3dSchemaCache.getSchemaLocationVersion(x3dFileText));
+            } catch (SAXException t) {
+                schemaLoadException = t;
+            }
             try {
                 /* Well formed */
-                System.out.println  ("XML well-formed check..."); // keep track on console in case unexpected exception/error messages appear
-                appendStart(passName = "XML well-formed check", referenceUrlWellFormed);
-
-                saxParserFactory = SAXParserFactory.newInstance();
-                saxParserFactory.setValidating(false);      // Turn off validation
-                saxParserFactory.setSchema(null);
-
-                saxParser = saxParserFactory.newSAXParser();
-                thisSAXHandler = new ThisSAXHandler(outputLogStringBuilder);
-                saxParser.parse(validationFileX3D, thisSAXHandler);
-                appendResults(passName, thisSAXHandler.error);
-            } catch (IOException | ParserConfigurationException | SAXException t) {
-                catchResponse(t, passName);
+                System.out.println  ("XML well-formed, DTD and schema validation checks..."); // keep track on console in case unexpected exception/error messages appear
+                context.appendStart(passName = "XML well-formed check", referenceUrlWellFormed);
+
+                try (SaxParserPool.PooledParser pooledParser = SaxParserPool.borrow(SaxParserPool.Configuration.DTD_VALIDATING))
+                {
+                    XMLReader xmlReader = pooledParser.getXMLReader(); // DTD grammar is taken from shared pool once warmed up
+                    xmlReader.setEntityResolver(thisSAXHandler);
+                    xmlReader.setErrorHandler(new SinglePassErrorHandler(thisSAXHandler, dtdSAXHandler, (x3dSchema != null) ? schemaSAXHandler : null));
+                    ContentHandler sceneContentHandler = null;
+                    if (x3dSchema != null)
+                    {
+                        // cached schema is compiled once per X3D version, only the ValidatorHandler is per request
+                        ValidatorHandler schemaValidatorHandler = x3dSchema.newValidatorHandler();
+                        schemaValidatorHandler.setErrorHandler(schemaSAXHandler);
+                        schemaValidatorHandler.setResourceResolver(new X3dSpecificationResolver());
+                        sceneContentHandler = new NamespaceBindingFilter(schemaValidatorHandler, schemaSAXHandler);
+                    }
+                    X3dFieldTypeTable fieldTypeTable = fieldTypeNumericCheck ? X3dFieldTypeTable.getTable(x3dVersion) : null;
+                    if (fieldTypeTable != null)
+                    {
+                        // numeric fields are checked as their attributes pass, then events continue to schema validation
+                        numericFieldChecker = new X3dNumericFieldChecker(fieldTypeTable);
+                        numericFieldChecker.setContentHandler(sceneContentHandler);
+                        sceneContentHandler = numericFieldChecker;
+                    }
+                    if (sceneContentHandler != null)
+                    {
+                        xmlReader.setContentHandler(sceneContentHandler);
+                    }
+                    xmlReader.parse(x3dScene.newInputSource());
+                }
+                context.appendResults(passName, thisSAXHandler.error);
+            } catch (SAXParseException t) {
+                if (thisSAXHandler.error) {
+                    context.appendResults(passName, true); // fatal error already reported to each section
+                } else {
+                    dtdException    = t;
+                    schemaException = (schemaException != null) ? schemaException : t;
+                    context.catchResponse(t, passName);
+                }
+            } catch (IOException | SAXException t) {
+                dtdException    = t;
+                schemaException = (schemaException != null) ? schemaException : t;
+                context.catchResponse(t, passName);
             }
         }
 
@@ -359,8 +414,8 @@ public class Validator {
         try {
             /* DOCTYPE */
             System.out.println  ("DOCTYPE reference check..."); // keep track on console in case unexpected exception/error messages appear
-            appendStart(passName = "DOCTYPE reference check", referenceUrlDoctype);
-            String validationLog = new X3dDoctypeCheckerModified().processScene(validationFile.getAbsolutePath());
+            context.appendStart(passName = "DOCTYPE reference check", referenceUrlDoctype);
+            String validationLog = X3dDoctypeCheck.checkHeader(htmlScene, X3dDoctypeCheck.DEFAULT_MAX_HEADER_LENGTH, false).getLog(true); // file as received, before https substitution
 //            if (validationLog.contains(X3dDoctypeCheckerModified.foundHTMLMessage)) {
 //                foundHTML = true;
 //            }
@@ -370,9 +425,9 @@ public class Validator {
             outputLogStringBuilder.append("\n");
             outputLogStringBuilder.append(escapeHtml(validationLog));
             outputLogStringBuilder.append("\n");
-            appendResults(passName, !foundHTML && (validationLog.contains(X3dDoctypeChecker.errorToken) || validationLog.contains(X3dDoctypeChecker.warningToken)));
+            context.appendResults(passName, !foundHTML && (validationLog.contains(X3dDoctypeChecker.errorToken) || validationLog.contains(X3dDoctypeChecker.warningToken)));
         } catch (Throwable t) {
-            catchResponse(t, passName);
+            context.catchResponse(t, passName);
         }
 
         // =========================================================================
@@ -385,26 +440,21 @@ public class Validator {
                 boolean foundJavascript = false;
                 if (foundX3DOM) 
                 {
-                    appendStart(passName = "X3DOM JavaScript and Cascading Style Sheet (CSS) references check", referenceX3DOM);
+                    context.appendStart(passName = "X3DOM JavaScript and Cascading Style Sheet (CSS) references check", referenceX3DOM);
                     
-                    // source <script type="text/javascript" src="http://www.x3dom.org/download/dev/x3dom-full.js"/>
-                    // regex  <script\s+type=['|"]text/javascript['|"]\s+src=['|"]http://www.x3dom.org[^\s]*.js['|"]\s*[/|>\s*</script]>
-                    String    regexX3domJs = "<script\\s+type=['|\"]text/javascript['|\"]\\s+src=['|\"]" + referenceX3DOM + "[^\\s]*.js['|\"]\\s*/>";
-                    Pattern patternX3domJs = Pattern.compile(regexX3domJs);
-                    Matcher matcherX3domJs = patternX3domJs.matcher(htmlFileText);
-
-                    foundJavascript = matcherX3domJs.find(); // find one (and only one) match
+                    String x3domJsElement = hostPageScanner.findScriptElement(PATTERN_X3DOM_JS);
+                    foundJavascript = (x3domJsElement != null); // find one (and only one) match
                     if (foundJavascript)
                     {
                         outputLogStringBuilder.append("Found online x3dom.js  statement:\n");
-                        outputLogStringBuilder.append("<blockquote><code>").append(linkUrlHtml(matcherX3domJs.group(0))).append("</code></blockquote>");
+                        outputLogStringBuilder.append("<blockquote><code>").append(linkUrlHtml(x3domJsElement)).append("</code></blockquote>");
                     }
-                    else if (htmlFileText.contains("x3dom.js"))
+                    else if (hostPageScanner.hasX3domJs())
                     {
                         foundJavascript = true;
                         outputLogStringBuilder.append("Found local x3dom.js statement").append("\n");
                     }
-                    else if (htmlFileText.contains("x3dom-full.js"))
+                    else if (hostPageScanner.hasX3domFullJs())
                     {
                         foundJavascript = true;
                         outputLogStringBuilder.append("Found local x3dom-full.js statement").append("\n");
@@ -414,21 +464,14 @@ public class Validator {
                         outputLogStringBuilder.append("No X3DOM .js  statement found").append("\n");
                     }
 
-                    // Java Regular Expression Tester https://www.freeformatter.com/java-regex-tester.html
-                    // NetbeansRegexPlugin - plugin detail http://plugins.netbeans.org/plugin/63405
-                    // source <link rel="stylesheet" type="text/css" href="http://www.x3dom.org/download/dev/x3dom.css"/>
-                    // regex  <link\s+rel=['|"]stylesheet['|"]\s+type=['|"]text/css['|"]\s+href=['|"]http://www.x3dom.org[^\s]*.css['|"]\s*/>
-                    String regexX3domCss = "<link\\s+rel=['|\"]stylesheet['|\"]\\s+type=['|\"]text/css['|\"]\\s+href=['|\"]" + referenceX3DOM + "[^\\s]*.css['|\"]\\s*/>";
-                    Pattern patternX3domCss = Pattern.compile(regexX3domCss);
-                    Matcher matcherX3domCss = patternX3domCss.matcher(htmlFileText);
-
-                    foundCSS = matcherX3domCss.find(); // find one (and only one) match
+                    String x3domCssElement = hostPageScanner.findLinkElement(PATTERN_X3DOM_CSS);
+                    foundCSS = (x3domCssElement != null); // find one (and only one) match
                     if (foundCSS) 
                     {
                         outputLogStringBuilder.append("Found online x3dom.css statement:\n");
-                        outputLogStringBuilder.append("<blockquote><code>").append(linkUrlHtml(matcherX3domCss.group(0))).append("</code></blockquote>");
+                        outputLogStringBuilder.append("<blockquote><code>").append(linkUrlHtml(x3domCssElement)).append("</code></blockquote>");
                     } 
-                    else if (htmlFileText.contains("x3dom.css"))
+                    else if (hostPageScanner.hasX3domCss())
                     {
                         foundCSS = true;
                         outputLogStringBuilder.append("Found local x3dom.css statement").append("\n");
@@ -437,50 +480,40 @@ public class Validator {
                     {
                         outputLogStringBuilder.append("No x3dom.css statement found").append("\n");
                     }
-                    appendResults(passName, !(foundCSS && foundJavascript));    
+                    context.appendResults(passName, !(foundCSS && foundJavascript));    
                 } 
                 else if (foundX_ITE)
                 {
-                    appendStart(passName = "X_ITE Cascading Style Sheet (CSS) and JavaScript references check", referenceX_ITE_site);
+                    context.appendStart(passName = "X_ITE Cascading Style Sheet (CSS) and JavaScript references check", referenceX_ITE_site);
 
-                    // source <link rel="stylesheet" type="text/css" href="http://code.create3000.de/x_ite/latest/dist/x_ite.css"/>
-                    // regex  <link\s+rel=['|"]stylesheet['|"]\s+type=['|"]text/css['|"]\s+href=['|"]http://code.create3000.de/x_ite[^\s]*.css['|"]\s*/>
-                    String    regexX_ITECss = "<link\\s+rel=['|\"]stylesheet['|\"]\\s+type=['|\"]text/css['|\"]\\s+href=['|\"]" + referenceX_ITE_code + "[^\\s]*x_ite.css['|\"]\\s*/>";
-                    Pattern patternX_ITECss = Pattern.compile(regexX_ITECss);
-                    Matcher matcherX_ITECss = patternX_ITECss.matcher(htmlFileText);
-
-                    foundCSS = matcherX_ITECss.find(); // find one (and only one) match
+                    String x_iteCssElement = hostPageScanner.findLinkElement(PATTERN_X_ITE_CSS);
+                    foundCSS = (x_iteCssElement != null); // find one (and only one) match
                     if (foundCSS) {
                         outputLogStringBuilder.append("Found X_ITE .css statement:\n");
-                        outputLogStringBuilder.append("<blockquote><code>").append(linkUrlHtml(matcherX_ITECss.group())).append("</code></blockquote>");
+                        outputLogStringBuilder.append("<blockquote><code>").append(linkUrlHtml(x_iteCssElement)).append("</code></blockquote>");
                     } else {
                         outputLogStringBuilder.append("No X_ITE .css statement found").append("\n");
                     }
-                    // source  <script type="text/javascript" src="http://code.create3000.de/x_ite/latest/dist/x_ite.min.js"></script>
-                    // regex  <cript\s+type=['|"]text/javascript['|"]\s+src=['|"]http://code.create3000.de/x_ite[^\s]*.js['|"]\s*>\s*</script>
-                    String    regexX_ITEJs = "<script\\s+type=['|\"]text/javascript['|\"]\\s+src=['|\"]" + referenceX_ITE_code + "[^\\s]*x_ite.min.js['|\"]\\s*>\\s*</script>";
-                    Pattern patternX_ITEJs = Pattern.compile(regexX_ITEJs);
-                    Matcher matcherX_ITEJs = patternX_ITEJs.matcher(htmlFileText);
-
-                    foundJavascript = matcherX_ITEJs.find(); // find one (and only one) match
+                    String x_iteJsElement = hostPageScanner.findScriptElement(PATTERN_X_ITE_JS);
+                    foundJavascript = (x_iteJsElement != null); // find one (and only one) match
                     if (foundJavascript) {
                         outputLogStringBuilder.append("Found X_ITE .js  statement:\n");
-                        outputLogStringBuilder.append("<blockquote><code>").append(linkUrlHtml(matcherX_ITEJs.group())).append("</code></blockquote>");
+                        outputLogStringBuilder.append("<blockquote><code>").append(linkUrlHtml(x_iteJsElement)).append("</code></blockquote>");
                     } else {
                         outputLogStringBuilder.append("No X_ITE .js  statement found").append("\n");
                     }
-                    appendResults(passName, !(foundCSS && foundJavascript));
+                    context.appendResults(passName, !(foundCSS && foundJavascript));
                 } 
                 else if (foundCobweb)
                 {
-                    appendStart(passName = "Cobweb Cascading Style Sheet (CSS) and JavaScript references check", referenceCobweb);
+                    context.appendStart(passName = "Cobweb Cascading Style Sheet (CSS) and JavaScript references check", referenceCobweb);
                     outputLogStringBuilder.append("TODO unimplemented, Cobweb has been replaced by X_ITE ").append(referenceX_ITE_site);
 
-                    appendResults(passName, !(foundCSS && foundJavascript));
+                    context.appendResults(passName, !(foundCSS && foundJavascript));
                 }
             }
         } catch (Exception t) {
-            catchResponse(t, passName);
+            context.catchResponse(t, passName);
         }
         // =========================================================================
         if (!foundX_ITE)
@@ -488,20 +521,19 @@ public class Validator {
             try {
                 System.out.println ("X3D DTD validation check..."); // keep track on console in case unexpected exception/error messages appear
                 /* X3D DTD validation */
-                appendStart(passName = "X3D DTD validation check", referenceUrlDtdSchema, "X3D DTD documentation", referenceUrlX3dDtdDocumentation);
+                context.appendStart(passName = "X3D DTD validation check", referenceUrlDtdSchema, "X3D DTD documentation", referenceUrlX3dDtdDocumentation);
                 if (x3dFileText.contains("showLog=") || x3dFileText.contains("showProgress=") || x3dFileText.contains("showStat=") || x3dFileText.contains("<X3D id='"))
                 {
                     outputLogStringBuilder.append("*** Note that X3DOM allows X3D element to include attributes id, showLog, showProgress, showStats").append("\n");
                 }
-                saxParserFactory = SAXParserFactory.newInstance();
-                saxParserFactory.setValidating(true);
-                saxParserFactory.setSchema(null);
-                saxParser = saxParserFactory.newSAXParser();
-                thisSAXHandler = new ThisSAXHandler(outputLogStringBuilder);
-                saxParser.parse(validationFileX3D, thisSAXHandler);
-                appendResults(passName, thisSAXHandler.error);
-            } catch (IOException | ParserConfigurationException | SAXException t) {
-                catchResponse(t, passName);
+                if (dtdException != null)
+                {
+                    throw dtdException;
+                }
+                outputLogStringBuilder.append(dtdLogStringBuilder); // results of single parse above
+                context.appendResults(passName, dtdSAXHandler.error);
+            } catch (Exception t) {
+                context.catchResponse(t, passName);
             }
         }
 
@@ -511,21 +543,59 @@ public class Validator {
             try {
                 System.out.println ("X3D schema validation check..."); // keep track on console in case unexpected exception/error messages appear
                 /* Schema validation */
-                appendStart(passName = "X3D schema validation check", referenceUrlDtdSchema, "X3D schema documentation", referenceUrlX3dSchemaDocumentation);
+                context.appendStart(passName = "X3D schema validation check", referenceUrlDtdSchema, "X3D schema documentation", referenceUrlX3dSchemaDocumentation);
                 if (x3dFileText.contains("showLog=") || x3dFileText.contains("showProgress=") || x3dFileText.contains("showStat=") || x3dFileText.contains("<X3D id='"))
                 {
                     outputLogStringBuilder.append("*** Note that X3DOM allows X3D element to include attributes id, showLog, showProgress, showStats").append("\n");
                 }
-                saxParserFactory = SAXParserFactory.newInstance();
-                saxParserFactory.setValidating(true);
-                saxParserFactory.setNamespaceAware(true);
-                saxParser = saxParserFactory.newSAXParser();
-                saxParser.setProperty(JAXPConstants.JAXP_SCHEMA_LANGUAGE, JAXPConstants.W3C_XML_SCHEMA); // see xerces example at http://xerces.apache.org/xerces2-j/faq-pcfp.html
-                thisSAXHandler = new ThisSAXHandler(outputLogStringBuilder);
-                saxParser.parse(validationFileX3D, thisSAXHandler);
-                appendResults(passName, thisSAXHandler.error);
-            } catch (IOException | ParserConfigurationException | SAXException t) {
-                catchResponse(t, passName);
+                if (schemaLoadException != null)
+                {
+                    outputLogStringBuilder.append("X3D schema named by xsd:noNamespaceSchemaLocation could not be loaded").append("\n");
+                    thisSAXHandler = new ThisSAXHandler(outputLogStringBuilder);
+                    thisSAXHandler.recordError(schemaLoadException);
+                    context.appendResults(passName, thisSAXHandler.error);
+                }
+                else if (schemaException != null)
+                {
+                    throw schemaException;
+                }
+                else if (x3dSchema != null)
+                {
+                    outputLogStringBuilder.append(schemaLogStringBuilder); // results of single parse above
+                    context.appendResults(passName, schemaSAXHandler.error);
+                }
+                else
+                {
+                    // no hint naming a published X3D schema, validate as the hint (or its absence) directs
+                    System.out.println ("X3D schema validation: no cached schema for this xsd:noNamespaceSchemaLocation, using schema location hint if any");
+                    thisSAXHandler = new ThisSAXHandler(outputLogStringBuilder);
+                    try (SaxParserPool.PooledParser pooledParser = SaxParserPool.borrow(SaxParserPool.Configuration.SCHEMA_VALIDATING))
+                    {
+                        XMLReader xmlReader = pooledParser.getXMLReader();
+                        xmlReader.setContentHandler(thisSAXHandler);
+                        xmlReader.setDTDHandler(thisSAXHandler);
+                        xmlReader.setEntityResolver(thisSAXHandler);
+                        xmlReader.setErrorHandler(thisSAXHandler);
+                        xmlReader.parse(x3dScene.newInputSource());
+                    }
+                    context.appendResults(passName, thisSAXHandler.error);
+                }
+            } catch (Exception t) {
+                context.catchResponse(t, passName);
+            }
+        }
+
+        // =========================================================================
+        // parse scene once into shared in-memory tree for all subsequent XSLT stages;
+        // profiled stylesheets belong to their own tracing Configuration, which cannot transform this tree
+        Source x3dSceneTree = null;
+        if (!foundX_ITE && !profileStylesheets)
+        {
+            try {
+                x3dSceneTree = StylesheetCache.buildSceneTree(x3dScene.newInputSource());
+            } catch (net.sf.saxon.s9api.SaxonApiException t) {
+                // not reported here, each XSLT stage reparses scene and reports its own error
+                System.out.println  ("Scene tree construction failed, XSLT stages reparse scene instead: " + t.getLocalizedMessage());
             }
         }
 
@@ -535,23 +605,11 @@ public class Validator {
             try {
                 System.out.println  ("X3dToX3dvClassicVrml.xslt X3dToVrml97.xslt conversion check..."); // keep track on console in case unexpected exception/error messages appear
                 /* X3d to ClassicVRML encoding */
-                appendStart(passName = "X3dToX3dvClassicVrml.xslt X3dToVrml97.xslt conversion check", referenceUrlX3dToClassicVrml, "Quality Assurance (QA) overview", referenceQualityAssurance);
-                xmlStreamSource = new StreamSource(new FileInputStream(validationFileX3D));
-                xslStreamSource = new StreamSource(Validator.class.getResourceAsStream(xsdBaseInClassPath + "X3dToX3dvClassicVrmlEncoding.xslt"));
-                File classicVrmlOutputFile = File.createTempFile(validationFileX3D.getName() + "_", "_classicVrmlOutput.txt");
-                classicVrmlOutputFile.deleteOnExit();
-                streamResult = new StreamResult(classicVrmlOutputFile);
-
-                saxonConfiguration = new net.sf.saxon.Configuration();
-                saxonConfiguration.setURIResolver((String href, String base) -> {
-                    if (href.equals("X3dToVrml97.xslt")) {
-                        return new StreamSource(Validator.class.getResourceAsStream(xsdBaseInClassPath + href));
-                    }
-                    System.out.println("href = " + href + " base = " + base);
-                    return null;
-                });
-                saxonTransformerFactory = new net.sf.saxon.TransformerFactoryImpl(saxonConfiguration);
-                saxonTransformer = saxonTransformerFactory.newTransformer(xslStreamSource);
+                context.appendStart(passName = "X3dToX3dvClassicVrml.xslt X3dToVrml97.xslt conversion check", referenceUrlX3dToClassicVrml, "Quality Assurance (QA) overview", referenceQualityAssurance);
+                // ClassicVRML output itself is not needed, only errors and messages
+                DiscardingContentHandler classicVrmlOutputSink = new DiscardingContentHandler();
+
+                saxonTransformer = newStageTransformer("X3dToX3dvClassicVrmlEncoding.xslt");
                 thisTransformListener = new ThisTransformListener(outputLogStringBuilder);
                 saxonTransformer.setErrorListener(thisTransformListener);
 
@@ -560,12 +618,12 @@ public class Validator {
                 net.sf.saxon.serialize.MessageWarner messageWarner = new MessageWarner();
                 messageWarner.setWriter(messageWriter);
                 ((net.sf.saxon.Controller) saxonTransformer).setMessageEmitter(messageWarner);
-                saxonTransformer.transform(xmlStreamSource, streamResult);
+                saxonTransformer.transform(getSceneSource(x3dSceneTree, x3dScene), classicVrmlOutputSink.newResult());
+                System.out.println  ("ClassicVRML conversion " + classicVrmlOutputSink);
                 outputLogStringBuilder.append(escapeHtml(thisTransformListener.getXsltMessages())); // stylesheet messages
-                appendResults(passName, thisTransformListener.error);
-                classicVrmlOutputFile.delete();
-            } catch (IOException | IllegalArgumentException | TransformerException t) {
-                catchResponse(t, passName);
+                context.appendResults(passName, thisTransformListener.error);
+            } catch (IllegalArgumentException | TransformerException t) {
+                context.catchResponse(t, passName);
             }
         }
 
@@ -573,16 +631,25 @@ public class Validator {
         try {
             System.out.println  ("Regular expression (regex) integer/float data-patterns check..."); // keep track on console in case unexpected exception/error messages appear
             /* regular expression checks, regex */
-            appendStart(passName = "Regular expression (regex) integer/float data-patterns check", referenceUrlRegex);
-            appendStatement("as part of ", "X3D Regular Expressions (regexes)", "https://www.web3d.org/specifications/X3dRegularExpressions.html");
-            Log4JListener.sb = outputLogStringBuilder;
-            int numMessages = Log4JListener.numMessages;
+            context.appendStart(passName = "Regular expression (regex) integer/float data-patterns check", referenceUrlRegex);
+            context.appendStatement("as part of ", "X3D Regular Expressions (regexes)", "https://www.web3d.org/specifications/X3dRegularExpressions.html");
+            Log4JListener.setLog(outputLogStringBuilder); // messages logged by checker on this thread go to this report
+            int numMessages = Log4JListener.getMessageCount();
 
-            X3dValuesRegexChecker regchk = new X3dValuesRegexChecker(validationFileX3D.getPath());
-            String reslt = regchk.processScene();
+            String reslt;
+            if ((numericFieldChecker != null) && numericFieldChecker.isComplete())
+            {
+                outputLogStringBuilder.append("Checked ").append(numericFieldChecker.getCheckedValueCount()).append(" numeric X3D field values").append("\n");
+                reslt = numericFieldChecker.getResults(); // found during single parse above
+            }
+            else
+            {
+                X3dNumericValuesChecker regchk = new X3dNumericValuesChecker(x3dScene);
+                reslt = regchk.processScene();
+            }
             outputLogStringBuilder.append(escapeHtml(reslt));
-            boolean wasError = (numMessages != Log4JListener.numMessages) || (reslt != null && reslt.length() > 0);
-            appendResults(passName, wasError);
+            boolean wasError = (numMessages != Log4JListener.getMessageCount()) || (reslt != null && reslt.length() > 0);
+            context.appendResults(passName, wasError);
         } catch (Throwable t) {
             t.printStackTrace();
             outputLogStringBuilder.append("Error caught: ");
@@ -590,6 +657,8 @@ public class Validator {
             outputLogStringBuilder.append(": ");
             outputLogStringBuilder.append(t.getLocalizedMessage());
             outputLogStringBuilder.append("\n");
+        } finally {
+            Log4JListener.setLog(null); // stop capturing once regex check is complete
         }
 
         // =========================================================================
@@ -598,42 +667,31 @@ public class Validator {
             try {
                 System.out.println  ("X3D Schematron check..."); // keep track on console in case unexpected exception/error messages appear
                 /* X3D Schematron */
-                appendStart(passName = "X3D Schematron check", referenceUrlDtdSchematron);
-                xmlStreamSource = new StreamSource(new FileInputStream(validationFileX3D));
-                xslStreamSource = new StreamSource(Validator.class.getResourceAsStream("/stylesheets/X3dSchematronValidityChecks.xslt"));
-                File schematronOutputFile = File.createTempFile(validationFile.getName() + "_", "_schematronOutput_1.txt");
-                schematronOutputFile.deleteOnExit();
-                streamResult = new StreamResult(schematronOutputFile);
+                context.appendStart(passName = "X3D Schematron check", referenceUrlDtdSchematron);
                 thisTransformListener = new ThisTransformListener(outputLogStringBuilder);
 
-                saxonConfiguration = new net.sf.saxon.Configuration();
+                // SVRL report text stage receives Schematron output as SAX events, so SVRL never touches disk
+                StringWriter resultStringWriter = new StringWriter();
+                TransformerHandler svrlReportTextHandler = StylesheetCache.getTransformerFactory().newTransformerHandler(StylesheetCache.getTemplates("SvrlReportText.xslt"));
+                svrlReportTextHandler.getTransformer().setErrorListener(new ThisTransformListener(outputLogStringBuilder));
+                svrlReportTextHandler.setResult(new StreamResult(resultStringWriter));
+
                 // don't want this output   cfg.setErrorListener(transLis);  // get errors on compile, too
-                saxonTransformerFactory = new net.sf.saxon.TransformerFactoryImpl(saxonConfiguration);
-                saxonTransformer = saxonTransformerFactory.newTransformer(xslStreamSource);
+                saxonTransformer = newStageTransformer("X3dSchematronValidityChecks.xslt");
                 saxonTransformer.setErrorListener(thisTransformListener);
-                saxonTransformer.transform(xmlStreamSource, streamResult);
-
-                xslStreamSource = new StreamSource(Validator.class.getResourceAsStream("/stylesheets/SvrlReportText.xslt"));
-                xmlStreamSource = new StreamSource(new FileInputStream(schematronOutputFile));// Use output from last 
-
-                StringWriter resultStringWriter = new StringWriter();
-                streamResult = new StreamResult(resultStringWriter);
-                saxonTransformer = saxonTransformerFactory.newTransformer(xslStreamSource);
-                saxonTransformer.setErrorListener(new ThisTransformListener(outputLogStringBuilder));
+                saxonTransformer.transform(getSceneSource(x3dSceneTree, x3dScene), new SAXResult(svrlReportTextHandler));
 
-                saxonTransformer.transform(xmlStreamSource, streamResult);
                 String resultString = resultStringWriter.toString();
                 outputLogStringBuilder.append(escapeHtml(resultString));
                 boolean error = (resultString.length() > 0) && resultString.contains("error");// only  output if specifically stated error
-                appendResults(passName, error);
+                context.appendResults(passName, error);
                 if (resultString.length() > 0) {
                     outputLogStringBuilder.append("Good practice is to fix errors and warnings wherever possible, and consider silencing harmless informational messages, so that important indicators remain noticeable.");
                     outputLogStringBuilder.append("\n");
                 }
-                schematronOutputFile.delete();
             }
-            catch (IOException | IllegalArgumentException | TransformerException t) {
-                catchResponse(t, passName);
+            catch (IllegalArgumentException | TransformerException t) {
+                context.catchResponse(t, passName);
             }
         }
 
@@ -643,28 +701,15 @@ public class Validator {
             try {
                 System.out.println  ("X3D Tidy check..."); // keep track on console in case unexpected exception/error messages appear
                 /* X3dTidy.xslt */
-                appendStart(passName = "X3D Tidy check", referenceUrlX3dTidy, "X3D Tidy Scene Cleanup, Corrections and Modifications", referenceX3dTidy);
-                xmlStreamSource = new StreamSource(new FileInputStream(validationFileX3D));
-                xslStreamSource = new StreamSource(Validator.class.getResourceAsStream(xsdBaseInClassPath + "X3dTidy.xslt")); // note capitalization
-                x3dTidyOutputFile = File.createTempFile(validationFile.getName() + "_", "_X3dTidyOutput.x3d");
-                x3dTidyOutputFile.deleteOnExit();
-
-                saxonConfiguration = new net.sf.saxon.Configuration();
-                saxonConfiguration.setURIResolver((String href, String base) -> {
-                    if (href.equals("X3dTidy.xslt")) {
-                        return new StreamSource(Validator.class.getResourceAsStream(xsdBaseInClassPath + href));
-                    }
-                    System.out.println("href = " + href + " base = " + base);
-                    return null;
-                });
+                context.appendStart(passName = "X3D Tidy check", referenceUrlX3dTidy, "X3D Tidy Scene Cleanup, Corrections and Modifications", referenceX3dTidy);
+
                 // TODO set defaults to not modify file's revision date
     //            saxonConfiguration.setConfigurationProperty("-reviseCurrentDate", "false"); /? INCORRECT
                 // TODO add Saxon javadoc
 
-                StringWriter resultStringWriter = new StringWriter();
-                streamResult = new StreamResult(resultStringWriter);
-                saxonTransformerFactory = new net.sf.saxon.TransformerFactoryImpl(saxonConfiguration);
-                saxonTransformer = saxonTransformerFactory.newTransformer(xslStreamSource);
+                // X3D Tidy output itself is not needed, only errors and messages
+                DiscardingContentHandler x3dTidyOutputSink = new DiscardingContentHandler();
+                saxonTransformer = newStageTransformer("X3dTidy.xslt"); // note capitalization
                 thisTransformListener = new ThisTransformListener(outputLogStringBuilder);
                 saxonTransformer.setErrorListener(thisTransformListener);
                 // special handling for Saxon to capture xsl:message output
@@ -680,68 +725,65 @@ public class Validator {
                 net.sf.saxon.serialize.MessageWarner messageWarner = new MessageWarner();
                 messageWarner.setWriter(messageWriter);
                 ((net.sf.saxon.Controller) saxonTransformer).setMessageEmitter(messageWarner);
-                saxonTransformer.transform(xmlStreamSource, streamResult);
+                saxonTransformer.transform(getSceneSource(x3dSceneTree, x3dScene), x3dTidyOutputSink.newResult());
+                System.out.println  ("X3D Tidy " + x3dTidyOutputSink);
                 outputLogStringBuilder.append(escapeHtml(thisTransformListener.getXsltMessages())); // stylesheet messages
-                appendResults(passName, thisTransformListener.error);
-                // do not delete resulting x3dTidyOutputFile since it may be used in pretty print
-            } catch (IOException | IllegalArgumentException | TransformerException t) {
-                catchResponse(t, passName);
+                context.appendResults(passName, thisTransformListener.error);
+            } catch (IllegalArgumentException | TransformerException t) {
+                context.catchResponse(t, passName);
             }
         }
 
         // =========================================================================
         if (!foundX_ITE)
         {
+            boolean prettyPrintListingOpen = false;
+            StringBuilder listingMessages = new StringBuilder(); // listener output arrives while listing streams, so is reported after it
             try {
                 System.out.println  ("X3D to XHTML pretty-print listing check..."); // keep track on console in case unexpected exception/error messages appear
                 /* X3dToXhtml.xslt */
-                appendStart(passName = "X3D to XHTML pretty-print listing check", referenceUrlPrettyPrintHtml, "Quality Assurance (QA) overview", referenceQualityAssurance);
-                if (prettyPrintX3dTidyOutputFile) {
-                    xmlStreamSource = new StreamSource(new FileInputStream(x3dTidyOutputFile));
-                } else {
-                    xmlStreamSource = new StreamSource(new FileInputStream(validationFileX3D));
-                }
-                xslStreamSource = new StreamSource(Validator.class.getResourceAsStream("/stylesheets/X3dToXhtml.xslt"));
-                File x3dToXhtmlOutputFile = File.createTempFile(validationFile.getName() + "_", "_X3dToXhtmlOutput.txt");
-                x3dToXhtmlOutputFile.deleteOnExit();
-
-                saxonConfiguration = new net.sf.saxon.Configuration();
-                saxonConfiguration.setURIResolver((String href, String base) -> {
-                    if (href.equals("X3dToXhtml.xslt") || href.equals("X3dExtrusionToSvgViaXslt1.1.xslt")) {
-                        return new StreamSource(Validator.class.getResourceAsStream(xsdBaseInClassPath + href));
-                    }
-                    System.out.println("href = " + href + " base = " + base);
-                    return null;
-                });
-
-                StringWriter resultStringWriter = new StringWriter();
-                streamResult = new StreamResult(resultStringWriter);
-                saxonTransformerFactory = new net.sf.saxon.TransformerFactoryImpl(saxonConfiguration);
-                saxonTransformer = saxonTransformerFactory.newTransformer(xslStreamSource);
-                thisTransformListener = new ThisTransformListener(outputLogStringBuilder);
+                context.appendStart(passName = "X3D to XHTML pretty-print listing check", referenceUrlPrettyPrintHtml, "Quality Assurance (QA) overview", referenceQualityAssurance);
+                Source xmlSource = getSceneSource(x3dSceneTree, x3dScene);
+                saxonTransformer = newStageTransformer("X3dToXhtml.xslt");
+                thisTransformListener = new ThisTransformListener(listingMessages);
                 // server returns linked document that is not necessarily in same directory as local document
                 saxonTransformer.setParameter("baseUrlAvailable", "false");
                 saxonTransformer.setErrorListener(thisTransformListener);
-                saxonTransformer.transform(xmlStreamSource, streamResult);
 
-                String resultString = resultStringWriter.toString();
-                resultString = resultString.substring(resultString.indexOf("<body>") + 6, resultString.indexOf("</body>")); // trim to excerpt desired results
-
-                outputLogStringBuilder.append("Conversion complete, documentation appears below.");
+                outputLogStringBuilder.append("Documentation listing appears below.");
                 outputLogStringBuilder.append("<div><i>Authoring hints:</i>  Select url links to check the availability of online addresses.  Comments are inserted with local links to document ROUTE connections.  Node tooltips are also provided.</div>");
                 outputLogStringBuilder.append("<div style='background-color:#ffffff;white-space:normal;'><hr />");
-                outputLogStringBuilder.append(resultString).append("\n"); // no need to escapeHtml()
+                // stream excerpt of XHTML body directly to output, rather than holding whole document in memory
+                context.flushReport(outputWriter);
+                prettyPrintListingOpen = true;
+                XhtmlBodyExtractor xhtmlBodyExtractor = new XhtmlBodyExtractor(outputWriter); // no need to escapeHtml()
+                saxonTransformer.transform(xmlSource, xhtmlBodyExtractor.newResult());
+                outputLogStringBuilder.append("\n");
                 outputLogStringBuilder.append("<br />\n").append("<hr />\n").append("</div>");
-                appendResults(passName, thisTransformListener.error);
-                x3dToXhtmlOutputFile.delete();
+                prettyPrintListingOpen = false;
+                appendListingMessages(listingMessages);
+                if (!thisTransformListener.error) {
+                    outputLogStringBuilder.append("Conversion complete.\n");
+                }
+                context.appendResults(passName, thisTransformListener.error);
             } catch (IOException | IllegalArgumentException | TransformerException t) {
-                catchResponse(t, passName);
+                if (prettyPrintListingOpen) {
+                    outputLogStringBuilder.append("\n</div>\n"); // close partially streamed listing before reporting problem
+                }
+                appendListingMessages(listingMessages);
+                context.catchResponse(t, passName);
             }
-            validationFileX3D.delete();
+            // excerpt of HTML page is deleted when context closes, X3D file as received belongs to caller
         }
 
         // =========================================================================
         System.out.println  ("Validation checks complete for " + validationFile.getName()); // keep track on console in case unexpected exception/error messages appear
+        if (profileStylesheets) { // cache and pool counters are otherwise logged at warm-up and shutdown by StylesheetWarmupListener
+            System.out.println  (StylesheetCache.getStatistics()); // confirm no stylesheet recompilation after warm-up
+            System.out.println  (X3dSchemaCache.getStatistics());  // confirm no schema recompilation after warm-up
+            System.out.println  (X3dGrammarPool.getStatistics());  // confirm DTD grammars remain cached
+            System.out.println  (SaxParserPool.getStatistics());   // confirm parsers are reused, waits indicate pool too small
+        }
         outputLogStringBuilder.append("\n--------- Validation checks complete for <b>");
         outputLogStringBuilder.append(validationFile.getName());
         outputLogStringBuilder.append("</b> ---------\n");
@@ -751,7 +793,68 @@ public class Validator {
                 .append("<a href='http://www.web3d.org/x3d/content/examples/X3dResources.html' target='X3dValidatorReference'>X3D Resources</a> ")
                 .append("page lists numerous additional resources for authoring X3D.");
 
-        return outputLogStringBuilder.toString();
+        context.flushReport(outputWriter);
+
+        // further <X3D> scenes on same HTML page each receive their own complete report
+        int x3dIslandNumber = 1;
+        for (String x3dIsland : additionalX3dIslands)
+        {
+            x3dIslandNumber++;
+            String x3dIslandFileName = validationFile.getName().substring(0, validationFile.getName().lastIndexOf(".")) + "Excerpt" + x3dIslandNumber + "_";
+            File x3dIslandFile = context.createTemporaryFile(x3dIslandFileName, ".x3d");
+            try (PrintWriter printWriterX3dIslandFile = new PrintWriter(Files.newBufferedWriter(x3dIslandFile.toPath(), StandardCharsets.UTF_8))) // matches prepended XML declaration
+            {
+                printWriterX3dIslandFile.println(prependX3dHeader(HtmlHostPageScanner.toHttpsSpecificationReferences(x3dIsland)));
+            }
+            validate(x3dIslandFile, outputWriter); // own context, excerpt is plain X3D so no further recursion
+            x3dIslandFile.delete();
+        }
+    }
+
+    /**
+     * Prepend XML declaration and DOCTYPE to a scene excerpted from an HTML page, so that
+     * it can be validated as a standalone X3D file.
+     *
+     * @param x3dText X3D element excerpted from page
+     * @return scene with XML declaration and X3D 3.3 or 4.0 DOCTYPE
+     */
+    private static String prependX3dHeader(String x3dText) {
+        if (x3dText.contains("version='3.") || x3dText.contains("version=\"3."))
+        {
+            return X3dDoctypeCheckerModified.XML_DECLARATION + "\n"
+                 + X3dDoctypeCheckerModified.FINAL_33_DOCTYPE + ">\n" + x3dText;
+        }
+        else
+        {
+            return X3dDoctypeCheckerModified.XML_DECLARATION + "\n"
+                 + X3dDoctypeCheckerModified.FINAL_40_DOCTYPE + ">\n" + x3dText;
+        }
+    }
+
+    /**
+     * Provide XSLT input, preferring the scene tree that was parsed once
+     *
+     * @param x3dSceneTree previously parsed scene, or null if parsing failed
+     * @param x3dScene scene content, reparsed only when no tree is available
+     * @return transformation source
+     */
+    private static Source getSceneSource(Source x3dSceneTree, SceneSource x3dScene) {
+        if (x3dSceneTree != null) {
+            return x3dSceneTree;
+        }
+        return x3dScene.newStreamSource();
+    }
+
+    /**
+     * Report warnings and errors raised while the pretty-print listing was streamed, beneath the listing.
+     *
+     * @param listingMessages transform listener output, may be empty
+     */
+    private void appendListingMessages(StringBuilder listingMessages) {
+        if (listingMessages.length() > 0) {
+            outputLogStringBuilder.append("Pretty-print listing conversion messages:\n");
+            outputLogStringBuilder.append(escapeHtml(listingMessages.toString()));
+        }
     }
 
     /**
@@ -829,7 +932,10 @@ public class Validator {
         }
     }
 
-    static class ThisSAXHandler extends DefaultHandler {
+    static class ThisSAXHandler extends DefaultHandler2 {
+
+        /** DTDs and schemas are read from bundled copies rather than network */
+        private static final X3dSpecificationResolver specificationResolver = new X3dSpecificationResolver();
 
         private final StringBuilder sb;
         public boolean error = false;
@@ -838,7 +944,12 @@ public class Validator {
             this.sb = sb;
         }
 
-        private void handle(String typ, SAXParseException e) {
+        @Override
+        public InputSource resolveEntity(String name, String publicId, String baseURI, String systemId) throws SAXException, IOException {
+            return specificationResolver.resolveEntity(name, publicId, baseURI, systemId);
+        }
+
+        private void handle(String typ, SAXException e) {
             sb.append("Error type: ");
             sb.append(typ);
             sb.append("\n");
@@ -857,9 +968,20 @@ public class Validator {
 
         @Override
         public void fatalError(SAXParseException e) throws SAXException {
+            recordFatalError(e);
+            super.fatalError(e);
+        }
+
+        /** record error that occurred outside parsing, such as a schema that could not be loaded */
+        void recordError(SAXException e) {
+            error = true;
+            handle("Error", e);
+        }
+
+        /** record fatal error without throwing, for sections sharing a single parse */
+        void recordFatalError(SAXParseException e) {
             error = true;
             handle("Fatal error", e);
-            super.fatalError(e);
         }
 
         @Override
@@ -868,4 +990,47 @@ public class Validator {
             super.warning(e);
         }
     }
+
+    /**
+     * Directs errors of the single combined parse to the report section of the check
+     * that previously found them in its own parse: DTD validity errors and warnings to
+     * the DTD section, and fatal errors to every section, since each separate parse
+     * stopped at the same point.  Schema errors arrive via the ValidatorHandler instead.
+     */
+    static class SinglePassErrorHandler implements ErrorHandler {
+
+        private final ThisSAXHandler wellFormedHandler;
+        private final ThisSAXHandler dtdHandler;
+        private final ThisSAXHandler schemaHandler;
+
+        /**
+         * @param wellFormedHandler well-formed section, throws on fatal error to stop parse
+         * @param dtdHandler DTD section
+         * @param schemaHandler schema section, or null if schema is validated separately
+         */
+        SinglePassErrorHandler(ThisSAXHandler wellFormedHandler, ThisSAXHandler dtdHandler, ThisSAXHandler schemaHandler) {
+            this.wellFormedHandler = wellFormedHandler;
+            this.dtdHandler        = dtdHandler;
+            this.schemaHandler     = schemaHandler;
+        }
+
+        @Override
+        public void warning(SAXParseException e) throws SAXException {
+            dtdHandler.warning(e);
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            dtdHandler.error(e);
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            dtdHandler.recordFatalError(e);
+            if (schemaHandler != null) {
+                schemaHandler.recordFatalError(e);
+            }
+            wellFormedHandler.fatalError(e);
+        }
+    }
 }
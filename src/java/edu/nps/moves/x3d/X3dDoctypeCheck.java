@@ -0,0 +1,543 @@
+/*
+ * Filename:     X3dDoctypeCheck.java
+ * Created:      17 OCT 2026
+ * Description:  Reentrant check of XML declaration and X3D DOCTYPE, reading only the scene header
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.web3d.x3d.tools.X3dDoctypeChecker;
+
+/**
+ * Checks the XML declaration and X3D DOCTYPE of a scene, optionally converting
+ * between final and transitional DTDs, with the same findings as the X3D tools
+ * {@link X3dDoctypeChecker}.  That class remains an unmodified copy of the X3D tools
+ * master, refreshed by Ant target getX3dTools, and keeps its state in static fields,
+ * so the validator uses this class instead.
+ *
+ * {@link #check(CharSequence, String, Conversion, boolean)} is reentrant and keeps no
+ * state between calls: all patterns are compiled once, and each call returns an
+ * immutable {@link Result} holding the detected DOCTYPE, header text and findings.
+ * {@link #checkHeader(SceneSource, int, boolean)} examines only the text preceding the
+ * X3D root element, so that validation cost does not grow with scene size.
+ * Checks never write to scene files, see {@link X3dDoctypeFixer} for conversion.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public final class X3dDoctypeCheck
+{
+    // diagnostic tokens and DOCTYPE strings are those of the X3D tools X3dDoctypeChecker, so that reports read the same
+    private static final String errorToken       = X3dDoctypeChecker.errorToken;
+    private static final String warningToken     = X3dDoctypeChecker.warningToken;
+    private static final String foundHTMLMessage = X3dDoctypeChecker.foundHTMLMessage;
+
+    /** inserted before a transitional DOCTYPE on conversion, removed again on conversion to final */
+    private static final String WarningComment = "<!--Warning:  transitional DOCTYPE in source .x3d file-->\n";
+    private static final String WarningRegex   = "<!--Warning:  transitional DOCTYPE in source \\.x3d file-->(\\s)*";
+    private static final String UsageMessage   = "usage: java X3dDoctypeChecker sceneName.x3d [-verbose | -setFinalDTD | -setTransitionalDTD]";
+
+    // patterns are immutable and thread-safe, so they are compiled once and shared by all checks
+
+    // had trouble with backreferencing group (\1 and \3), (\4 and \6) to ensure matching single/double-quote characters :(
+    private static final Pattern PATTERN_XML_HEADER = Pattern.compile(
+            "<\\?xml version=(\"|')1.(0|1)(\"|') encoding=(\"|')UTF-(8|16)(\"|')\\?>");
+    private static final Pattern PATTERN_XML_HEADER_UTF_IGNORE_CASE = Pattern.compile(
+            "<\\?xml version=(\"|')1.(0|1)(\"|') encoding=(\"|')(U|u)(T|t)(F|f)-(8|16)(\"|')\\?>");
+
+    // <!-- <!DOCTYPE not is matched since embedded as XML comment
+    // DOCTYPE line can finish with close bracket > or else open square bracket [ in files with embedded entity-reference declarations (such as examples/development/QuadTreeExamples.x3d) will work
+
+    // <!DOCTYPE X3D PUBLIC "ISO//Web3D//DTD X3D 3.3//EN" "https://www.web3d.org/specifications/x3d-3.3.dtd">
+    // <!DOCTYPE X3D PUBLIC "https://www.web3d.org/specifications/x3d-3.0.dtd" "file:///www.web3d.org/TaskGroups/x3d/translation/x3d-3.0.dtd">
+    // single pattern finds every X3D DOCTYPE, and its lookahead captures versions of final or transitional identifiers if present,
+    // so that one pass both classifies and counts DOCTYPEs; the lookahead consumes nothing, so adjacent DOCTYPEs are all counted
+    private static final Pattern PATTERN_DOCTYPE = Pattern.compile(
+            "[^<][^!][^-][^-](\\s)?<!DOCTYPE X3D PUBLIC(?=(?:"
+            + "(\\s)+\"ISO//Web3D//DTD X3D (?<finalId>[34].[0-3])//EN\"(\\s)+\"http(?<https>s)?://www.web3d.org/specifications/x3d-(?<finalUrl>[34].[0-3]).dtd\"(\\s)*(>|\\[)"
+            + "|(\\s)+\"https://www.web3d.org/specifications/x3d-(?<transitionalId>3.[01]).dtd\"(\\s)+\"file:///www.web3d.org/TaskGroups/x3d/translation/x3d-(?<transitionalUrl>3.[01]).dtd\"(\\s)*(>|\\[)"
+            + ")|)");
+
+    // used for conversion only, group doctype excludes preceding characters and closing > or [ so that replacement leaves them intact
+    private static final Pattern PATTERN_FINAL_30_DOCTYPE = Pattern.compile(
+            "[^<][^!][^-][^-](\\s)?(?<doctype><!DOCTYPE X3D PUBLIC(\\s)+\"ISO//Web3D//DTD X3D 3.0//EN\"(\\s)+\"http(s)?://www.web3d.org/specifications/x3d-3.0.dtd\"(\\s)*)(>|\\[)");
+    private static final Pattern PATTERN_FINAL_31_DOCTYPE = Pattern.compile(
+            "[^<][^!][^-][^-](\\s)?(?<doctype><!DOCTYPE X3D PUBLIC(\\s)+\"ISO//Web3D//DTD X3D 3.1//EN\"(\\s)+\"http(s)?://www.web3d.org/specifications/x3d-3.1.dtd\"(\\s)*)(>|\\[)");
+    private static final Pattern PATTERN_TRANSITIONAL_30_DOCTYPE = Pattern.compile(
+            "[^<][^!][^-][^-](\\s)?(?<doctype><!DOCTYPE X3D PUBLIC(\\s)+\"https://www.web3d.org/specifications/x3d-3.0.dtd\"(\\s)+\"file:///www.web3d.org/TaskGroups/x3d/translation/x3d-3.0.dtd\"(\\s)*)(>|\\[)");
+    private static final Pattern PATTERN_TRANSITIONAL_31_DOCTYPE = Pattern.compile(
+            "[^<][^!][^-][^-](\\s)?(?<doctype><!DOCTYPE X3D PUBLIC(\\s)+\"https://www.web3d.org/specifications/x3d-3.1.dtd\"(\\s)+\"file:///www.web3d.org/TaskGroups/x3d/translation/x3d-3.1.dtd\"(\\s)*)(>|\\[)");
+
+    /** default number of characters searched for the X3D root element, beyond which the whole scene is checked */
+    public static final int DEFAULT_MAX_HEADER_LENGTH = 64 * 1024;
+
+    private static final Pattern PATTERN_WARNING_COMMENT = Pattern.compile(WarningRegex);
+
+    private X3dDoctypeCheck()
+    {
+        // static utility class, no instances
+    }
+
+    /** DOCTYPE conversion requested of a check */
+    public enum Conversion
+    {
+        /** check only */
+        NONE,
+        /** replace transitional DOCTYPE by corresponding final DOCTYPE */
+        SET_FINAL_DTD,
+        /** replace final 3.0 or 3.1 DOCTYPE by corresponding transitional DOCTYPE */
+        SET_TRANSITIONAL_DTD
+    }
+
+    /** DOCTYPE found by a check */
+    public enum Doctype
+    {
+        /** final X3D 3.0 DOCTYPE */
+        FINAL_30,
+        /** final X3D 3.1 DOCTYPE */
+        FINAL_31,
+        /** final X3D 3.2 DOCTYPE */
+        FINAL_32,
+        /** final X3D 3.3 DOCTYPE */
+        FINAL_33,
+        /** final X3D 4.0 DOCTYPE */
+        FINAL_40,
+        /** final X3D 4.1 DOCTYPE */
+        FINAL_41,
+        /** transitional X3D 3.0 DOCTYPE */
+        TRANSITIONAL_30,
+        /** transitional X3D 3.1 DOCTYPE */
+        TRANSITIONAL_31,
+        /** X3D DOCTYPE not matching any of the above */
+        NONSTANDARD,
+        /** no X3D DOCTYPE, or check did not get far enough to look */
+        NONE,
+        /** HTML page, so any DOCTYPE belongs to the page rather than an X3D scene */
+        HTML
+    }
+
+    /**
+     * Immutable outcome of one DOCTYPE check, safe to share between threads.
+     */
+    public static final class Result
+    {
+        private final Doctype      doctype;
+        private final boolean      foundHTML;
+        private final String       headerText;
+        private final int          doctypeCount;
+        private final List<String> findings;
+        private final boolean[]    findingEndsLine;
+        private final boolean      complete;
+        private final String       revisedScene;
+
+        private Result(Doctype doctype, boolean foundHTML, String headerText, int doctypeCount,
+                       List<String> findings, List<Boolean> findingEndsLine, boolean complete, String revisedScene)
+        {
+            this.doctype         = doctype;
+            this.foundHTML       = foundHTML;
+            this.headerText      = headerText;
+            this.doctypeCount    = doctypeCount;
+            this.findings        = Collections.unmodifiableList(new ArrayList<>(findings));
+            this.findingEndsLine = new boolean[findingEndsLine.size()];
+            for (int i = 0; i < this.findingEndsLine.length; i++)
+            {
+                this.findingEndsLine[i] = findingEndsLine.get(i);
+            }
+            this.complete        = complete;
+            this.revisedScene    = revisedScene;
+        }
+
+        /** @return DOCTYPE detected */
+        public Doctype getDoctype()
+        {
+            return doctype;
+        }
+
+        /** @return whether scene is an HTML page containing X3D */
+        public boolean isHTML()
+        {
+            return foundHTML;
+        }
+
+        /** @return text preceding X3D element, or whole scene if no X3D element was found */
+        public String getHeaderText()
+        {
+            return headerText;
+        }
+
+        /** @return number of X3D DOCTYPEs found, only counted when a DOCTYPE was recognized */
+        public int getDoctypeCount()
+        {
+            return doctypeCount;
+        }
+
+        /** @return diagnostic messages in order, without line breaks */
+        public List<String> getFindings()
+        {
+            return findings;
+        }
+
+        /** @return whether any finding is an error or warning */
+        public boolean hasErrorsOrWarnings()
+        {
+            for (String finding : findings)
+            {
+                if (finding.contains(errorToken) || finding.contains(warningToken))
+                    return true;
+            }
+            return false;
+        }
+
+        /** @return revised scene text if a conversion was requested and performed, otherwise null */
+        public String getRevisedScene()
+        {
+            return revisedScene;
+        }
+
+        /** @return diagnostic log in traditional form, some messages sharing a line */
+        public String getLog()
+        {
+            return getLog(false);
+        }
+
+        /**
+         * @param eachFindingOnOwnLine whether every message ends its line
+         * @return diagnostic log
+         */
+        public String getLog(boolean eachFindingOnOwnLine)
+        {
+            StringBuilder log = new StringBuilder();
+            for (int i = 0; i < findings.size(); i++)
+            {
+                log.append(findings.get(i));
+                if (eachFindingOnOwnLine || findingEndsLine[i])
+                    log.append("\n");
+            }
+            return complete ? log.toString().trim() : log.toString();
+        }
+    }
+
+    /** collects findings during one check, never shared */
+    private static final class Findings
+    {
+        final List<String>  messages = new ArrayList<>();
+        final List<Boolean> endsLine = new ArrayList<>();
+
+        void add(String message)
+        {
+            messages.add(message);
+            endsLine.add(Boolean.FALSE);
+        }
+
+        void addLine(String message)
+        {
+            messages.add(message);
+            endsLine.add(Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Check XML declaration and DOCTYPE of a scene.  Reentrant, nothing is retained between calls.
+     *
+     * @param sceneText scene content
+     * @param sceneName file name used in messages
+     * @param conversion DOCTYPE conversion to perform, if applicable
+     * @param verbose whether header text is logged on success
+     * @return immutable result
+     */
+    public static Result check(CharSequence sceneText, String sceneName, Conversion conversion, boolean verbose)
+    {
+        Findings findings = new Findings();
+        boolean setFinalDTD        = (conversion == Conversion.SET_FINAL_DTD);
+        boolean setTransitionalDTD = (conversion == Conversion.SET_TRANSITIONAL_DTD);
+        if (sceneText == null)
+        {
+            findings.addLine("[X3dDoctypeChecker] failure: file read unsuccessful for " + sceneName);
+            return new Result(Doctype.NONE, false, "", 0, findings.messages, findings.endsLine, false, null);
+        }
+        else if (sceneText.length() == 0)
+        {
+            findings.addLine("[X3dDoctypeChecker] failure: empty file " + sceneName);
+            return new Result(Doctype.NONE, false, "", 0, findings.messages, findings.endsLine, false, null);
+        }
+        String text = sceneText.toString(); // no copy when scene is already a String
+        int indexHTML = text.indexOf("<html");
+        if (indexHTML < 0)
+            indexHTML = text.indexOf("<HTML");
+
+        String headerText;
+        int indexX3D = text.indexOf("<X3D");
+        if (indexX3D > 0)
+            headerText = text.substring(0, indexX3D).trim();
+        else
+        {
+            findings.addLine(errorToken+"[X3dDoctypeChecker] failure: no <X3D> element found");
+            headerText = text;
+        }
+        boolean foundHTML = (indexHTML > 0);
+        if ((indexHTML > 0) && (indexX3D > 0) && (indexHTML > indexX3D))
+            foundHTML = false; // apparently <HTML string within X3D scene
+
+        boolean foundNo_DTD = false;
+        boolean foundXmlHeader = PATTERN_XML_HEADER.matcher(text).find();
+        if      (foundHTML && foundXmlHeader)
+        {
+            findings.add("[X3dDoctypeChecker] " + foundHTMLMessage + ", ignoring original XML declaration.");
+        }
+        else if (foundHTML)
+        {
+            findings.add("[X3dDoctypeChecker] " + foundHTMLMessage + ", ignoring absence of XML declaration.");
+        }
+        else if (foundXmlHeader)
+        {
+            findings.add("[X3dDoctypeChecker] success: valid XML declaration found.");
+        }
+        else if (PATTERN_XML_HEADER_UTF_IGNORE_CASE.matcher(text).find())
+        {
+            findings.add("[X3dDoctypeChecker] failure: invalid XML declaration found (note that encoding='UTF-8' must include hyphen and be upper case).");
+        }
+        else // no resetting of XML declaration performed
+        {
+            findings.addLine(errorToken+" [X3dDoctypeChecker] failure: no valid XML declaration found in scene!");
+            findings.addLine(headerText);
+            foundNo_DTD = true;
+            findings.addLine(UsageMessage);
+            if (!setFinalDTD && !setTransitionalDTD) // force update if requested
+            {
+                return new Result(Doctype.NONE, foundHTML, headerText, 0, findings.messages, findings.endsLine, false, null);
+            }
+        }
+
+        // one pass over all X3D DOCTYPEs, keeping the most preferred kind found and their count
+        Doctype bestDoctype = null;
+        int matchCount = 0;
+        Matcher matcherDoctype = PATTERN_DOCTYPE.matcher(text);
+        while (matcherDoctype.find())
+        {
+            matchCount++;
+            Doctype found = classify(matcherDoctype);
+            if ((bestDoctype == null) || (found.ordinal() < bestDoctype.ordinal()))
+                bestDoctype = found;
+        }
+
+        Doctype doctype;
+        if      (foundHTML && text.contains("<!DOCTYPE"))
+        {
+            doctype = Doctype.HTML;
+            findings.add("[X3dDoctypeChecker] " + foundHTMLMessage + ", ignoring original DOCTYPE, using X3D DOCTYPE v3.3;");
+        }
+        else if (foundHTML)
+        {
+            doctype = Doctype.HTML;
+            findings.add("[X3dDoctypeChecker] " + foundHTMLMessage + ", ignoring absence of DOCTYPE, using X3D DOCTYPE v3.3;");
+        }
+        else if (bestDoctype == Doctype.NONSTANDARD)
+        {
+            findings.addLine("\n[X3dDoctypeChecker] "+errorToken+" failure: nonstandard X3D DOCTYPE found!");
+            findings.addLine(headerText);
+            return new Result(Doctype.NONSTANDARD, foundHTML, headerText, matchCount, findings.messages, findings.endsLine, false, null);
+        }
+        else if (bestDoctype != null)
+        {
+            doctype = bestDoctype;
+            findings.addLine(getDescription(doctype));
+        }
+        else
+        {
+            doctype = Doctype.NONE;
+            findings.addLine("\n[X3dDoctypeChecker] "+errorToken+" failure: no X3D DOCTYPE found!");
+            findings.addLine(headerText);
+            foundNo_DTD = true;
+            if (!setFinalDTD && !setTransitionalDTD) // force update if requested
+            {
+                return new Result(doctype, foundHTML, headerText, 0, findings.messages, findings.endsLine, false, null);
+            }
+        }
+        if (verbose && (doctype != Doctype.HTML) && (doctype != Doctype.NONE))
+            findings.addLine(headerText);
+
+        // check for multiple DOCTYPEs present
+        if (matchCount > 1)
+        {
+            findings.addLine(warningToken+" Multiple X3D DOCTYPEs found (" + matchCount + " total).");
+            if ((setFinalDTD || setTransitionalDTD) && !foundHTML)
+            {
+                findings.addLine("[X3dDoctypeChecker] No DTD conversion attempted.");
+            }
+            findings.addLine(headerText);
+            return new Result(doctype, foundHTML, headerText, matchCount, findings.messages, findings.endsLine, false, null);
+        }
+        if (foundHTML || (conversion == Conversion.NONE))
+        {
+            return new Result(doctype, foundHTML, headerText, matchCount, findings.messages, findings.endsLine, !foundHTML, null); // application complete
+        }
+
+        String revisedScene = null;
+        if      (setFinalDTD && (doctype == Doctype.TRANSITIONAL_30))
+        {
+            revisedScene = replaceDoctype(PATTERN_TRANSITIONAL_30_DOCTYPE, text, X3dDoctypeChecker.FINAL_30_DOCTYPE);
+            revisedScene = PATTERN_WARNING_COMMENT.matcher(revisedScene).replaceAll("");  // also remove warning comment
+            findings.addLine("[X3dDoctypeChecker] scene reset to final X3D 3.0 DTD.");
+            findings.addLine(X3dDoctypeChecker.FINAL_30_DOCTYPE+">");
+        }
+        else if (setFinalDTD && (doctype == Doctype.TRANSITIONAL_31))
+        {
+            revisedScene = replaceDoctype(PATTERN_TRANSITIONAL_31_DOCTYPE, text, X3dDoctypeChecker.FINAL_31_DOCTYPE);
+            revisedScene = PATTERN_WARNING_COMMENT.matcher(revisedScene).replaceAll("");  // also remove warning comment
+            findings.addLine("[X3dDoctypeChecker] scene reset to final X3D 3.1 DTD.");
+            findings.addLine(X3dDoctypeChecker.FINAL_31_DOCTYPE+">");
+        }
+        else if (setTransitionalDTD && (doctype == Doctype.FINAL_30))
+        {
+            revisedScene = replaceDoctype(PATTERN_FINAL_30_DOCTYPE, text, WarningComment + X3dDoctypeChecker.TRANSITIONAL_30_DOCTYPE);
+            findings.addLine("[X3dDoctypeChecker] scene reset to transitional X3D DTD.");
+            findings.addLine(X3dDoctypeChecker.TRANSITIONAL_30_DOCTYPE+">");
+        }
+        else if (setTransitionalDTD && (doctype == Doctype.FINAL_31))
+        {
+            revisedScene = replaceDoctype(PATTERN_FINAL_31_DOCTYPE, text, WarningComment + X3dDoctypeChecker.TRANSITIONAL_31_DOCTYPE);
+            findings.addLine("[X3dDoctypeChecker] scene reset to transitional X3D DTD.");
+            findings.addLine(X3dDoctypeChecker.TRANSITIONAL_31_DOCTYPE+">");
+        }
+        else if (foundNo_DTD)
+        {
+            findings.addLine("no action taken, functionality not implemented...");
+        }
+        else
+        {
+            findings.addLine("no action necessary.");
+        }
+        return new Result(doctype, foundHTML, headerText, matchCount, findings.messages, findings.endsLine, true, revisedScene); // application complete
+    }
+
+    /** replace first DOCTYPE matched by pattern, keeping surrounding text including its closing > or [ */
+    private static String replaceDoctype(Pattern pattern, String text, String replacementDoctype)
+    {
+        Matcher matcher = pattern.matcher(text);
+        if (!matcher.find())
+            return text;
+        return text.substring(0, matcher.start("doctype")) + replacementDoctype + text.substring(matcher.end("doctype"));
+    }
+
+    /** kind of DOCTYPE at current match of PATTERN_DOCTYPE */
+    private static Doctype classify(Matcher matcherDoctype)
+    {
+        String finalId  = matcherDoctype.group("finalId");
+        String finalUrl = matcherDoctype.group("finalUrl");
+        if ((finalId != null) && sameVersion(finalId, finalUrl))
+        {
+            switch ("" + finalId.charAt(0) + finalId.charAt(2))
+            {
+                case "30": return Doctype.FINAL_30;
+                case "31": return Doctype.FINAL_31;
+                case "32": return Doctype.FINAL_32;
+                case "33": return Doctype.FINAL_33;
+                case "40": return Doctype.FINAL_40;
+                case "41": return (matcherDoctype.group("https") != null) ? Doctype.FINAL_41 : Doctype.NONSTANDARD; // 4.1 requires https
+                default:   return Doctype.NONSTANDARD;
+            }
+        }
+        String transitionalId  = matcherDoctype.group("transitionalId");
+        String transitionalUrl = matcherDoctype.group("transitionalUrl");
+        if ((transitionalId != null) && sameVersion(transitionalId, transitionalUrl))
+        {
+            return (transitionalId.charAt(2) == '0') ? Doctype.TRANSITIONAL_30 : Doctype.TRANSITIONAL_31;
+        }
+        return Doctype.NONSTANDARD;
+    }
+
+    /** versions such as 3.3 match in major and minor digit, separator is not significant */
+    private static boolean sameVersion(String version, String otherVersion)
+    {
+        return (otherVersion != null) && (version.charAt(0) == otherVersion.charAt(0)) && (version.charAt(2) == otherVersion.charAt(2));
+    }
+
+    private static String getDescription(Doctype doctype)
+    {
+        switch (doctype)
+        {
+            case FINAL_30:        return "[X3dDoctypeChecker] success: final X3D 3.0 DOCTYPE found.";
+            case FINAL_31:        return "[X3dDoctypeChecker] success: final X3D 3.1 DOCTYPE found.";
+            case FINAL_32:        return "[X3dDoctypeChecker] success: final X3D 3.2 DOCTYPE found.";
+            case FINAL_33:        return "[X3dDoctypeChecker] success: final X3D 3.3 DOCTYPE found.";
+            case FINAL_40:        return "[X3dDoctypeChecker] success: final X3D 4.0 DOCTYPE found.";
+            case FINAL_41:        return "[X3dDoctypeChecker] success: final X3D 4.1 DOCTYPE found.";
+            case TRANSITIONAL_30: return "[X3dDoctypeChecker] warning: transitional X3D 3.0 DOCTYPE found.";
+            case TRANSITIONAL_31: return "[X3dDoctypeChecker] warning: transitional X3D 3.1 DOCTYPE found.";
+            default:              return "";
+        }
+    }
+
+    /**
+     * Check XML declaration and DOCTYPE from the beginning of a scene only, reading no
+     * further than the X3D root element, so that cost does not depend on scene size.
+     * If the root element is not found within maxHeaderLength characters, as in HTML
+     * pages with scenes further down, or begins the scene, the whole scene is checked instead.  Only DOCTYPEs
+     * in the header are counted.  Reentrant, nothing is retained between calls.
+     *
+     * @param sceneSource scene content
+     * @param maxHeaderLength maximum number of characters searched for the X3D root element
+     * @param verbose whether header text is logged on success
+     * @return immutable result
+     */
+    public static Result checkHeader(SceneSource sceneSource, int maxHeaderLength, boolean verbose)
+    {
+        CharSequence prefix = sceneSource.getPrefix(maxHeaderLength);
+        int indexX3D = indexOf(prefix, "<X3D");
+        if (indexX3D > 0) // root element at start has no header, checked as before so that log shows scene
+        {
+            return check(prefix.subSequence(0, indexX3D + "<X3D".length()), sceneSource.getFileName(), Conversion.NONE, verbose);
+        }
+        return check(sceneSource.getText(), sceneSource.getFileName(), Conversion.NONE, verbose);
+    }
+
+    private static int indexOf(CharSequence text, String target)
+    {
+        int last = text.length() - target.length();
+        for (int i = 0; i <= last; i++)
+        {
+            int j = 0;
+            while ((j < target.length()) && (text.charAt(i + j) == target.charAt(j)))
+                j++;
+            if (j == target.length())
+                return i;
+        }
+        return -1;
+    }
+}
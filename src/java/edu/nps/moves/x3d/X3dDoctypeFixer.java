@@ -0,0 +1,198 @@
+/*
+ * Filename:     X3dDoctypeFixer.java
+ * Created:      17 OCT 2026
+ * Description:  Convert X3D DOCTYPE of a scene file, replacing the file atomically
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Converts the X3D DOCTYPE of a scene file between final and transitional DTDs.
+ * This is the only part of the DOCTYPE checking tools that writes to scene files;
+ * validation reads scenes read-only and never holds write handles on them.
+ *
+ * The scene is read read-only, checked with
+ * {@link X3dDoctypeCheck#check(CharSequence, String, X3dDoctypeCheck.Conversion, boolean)},
+ * and only if a revision results is the new content written to a temporary file in
+ * the same directory, forced to disk, and renamed over the original.  Readers thus
+ * see either the old scene or the new one, never a partially written file, and a
+ * failure leaves the original untouched.
+ *
+ * Command-line use matches X3dDoctypeChecker, for example:
+ * <pre>  java edu.nps.moves.x3d.X3dDoctypeFixer scene.x3d -setFinalDTD</pre>
+ * Ant target verify.doctype.fixer runs {@link X3dDoctypeFixerCheck}.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public final class X3dDoctypeFixer
+{
+    private static final String USAGE_MESSAGE = "usage: java edu.nps.moves.x3d.X3dDoctypeFixer sceneName.x3d [-verbose | -setFinalDTD | -setTransitionalDTD]";
+
+    private X3dDoctypeFixer()
+    {
+        // static utility class, no instances
+    }
+
+    /**
+     * Check DOCTYPE of a scene file and convert it as requested, replacing the file atomically.
+     *
+     * @param sceneFile scene to convert
+     * @param conversion DOCTYPE conversion to perform
+     * @param verbose whether header text is logged on success
+     * @return immutable result, whose revised scene (if any) has been written
+     * @throws IOException if scene cannot be read or replaced
+     */
+    public static X3dDoctypeCheck.Result fixDoctype(File sceneFile, X3dDoctypeCheck.Conversion conversion, boolean verbose) throws IOException
+    {
+        SceneSource sceneSource = SceneSource.fromFile(sceneFile, false); // not mapped, since file is replaced below
+        X3dDoctypeCheck.Result result = X3dDoctypeCheck.check(sceneSource.getText(), sceneFile.getPath(), conversion, verbose);
+        if (result.getRevisedScene() != null)
+        {
+            replaceFileContent(sceneFile.toPath(), result.getRevisedScene(), sceneSource.getCharset());
+        }
+        return result;
+    }
+
+    /**
+     * Replace file content by writing a temporary file in the same directory and
+     * renaming it over the original, atomically where the file system supports it.
+     * File permissions are kept on POSIX file systems.
+     *
+     * @param scenePath file to replace
+     * @param sceneText new content
+     * @param charset encoding of new content, normally that declared by the scene
+     * @throws IOException if temporary file cannot be written or renamed, original is then unchanged
+     */
+    public static void replaceFileContent(Path scenePath, String sceneText, Charset charset) throws IOException
+    {
+        Path targetPath    = scenePath.toAbsolutePath();
+        Path temporaryPath = Files.createTempFile(targetPath.getParent(), "." + targetPath.getFileName(), ".tmp"); // same directory, so that rename stays on one file system
+        try {
+            try (FileChannel fileChannel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE))
+            {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(sceneText.getBytes(charset));
+                while (byteBuffer.hasRemaining())
+                {
+                    fileChannel.write(byteBuffer);
+                }
+                fileChannel.force(true); // content is on disk before it becomes visible under original name
+            }
+            if (Files.exists(targetPath))
+            {
+                try {
+                    Files.setPosixFilePermissions(temporaryPath, Files.getPosixFilePermissions(targetPath)); // temporary files are created owner-only
+                } catch (UnsupportedOperationException uoe) {
+                    // not a POSIX file system, default permissions apply
+                }
+            }
+            try {
+                Files.move(temporaryPath, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(temporaryPath, targetPath, StandardCopyOption.REPLACE_EXISTING); // still never truncated in place
+            }
+        } finally {
+            Files.deleteIfExists(temporaryPath); // only remains if writing or renaming failed
+        }
+    }
+
+    /**
+     * Check DOCTYPE of a scene file, converting it if requested, and print the log.
+     * Exits with status 1 if arguments are wrong or the scene cannot be read or replaced.
+     *
+     * @param args scene file, then optional -verbose (-v), -setFinalDTD (-f) or -setTransitionalDTD (-t)
+     */
+    public static void main(String[] args)
+    {
+        if ((args.length < 1) || (args.length > 3))
+        {
+            System.out.println(USAGE_MESSAGE);
+            System.exit(1);
+            return;
+        }
+        boolean verbose = false;
+        X3dDoctypeCheck.Conversion conversion = X3dDoctypeCheck.Conversion.NONE;
+        for (int i = 1; i < args.length; i++)
+        {
+            X3dDoctypeCheck.Conversion requested = null;
+            if      (args[i].equals("-v") || args[i].equals("-verbose"))
+            {
+                verbose = true;
+            }
+            else if (args[i].equals("-f") || args[i].equals("-setFinalDTD"))
+            {
+                requested = X3dDoctypeCheck.Conversion.SET_FINAL_DTD;
+            }
+            else if (args[i].equals("-t") || args[i].equals("-setTransitionalDTD"))
+            {
+                requested = X3dDoctypeCheck.Conversion.SET_TRANSITIONAL_DTD;
+            }
+            else
+            {
+                System.out.println("*** [X3dDoctypeFixer] unrecognized command-line option \"" + args[i] + "\"");
+                System.out.println(USAGE_MESSAGE);
+                System.exit(1);
+                return;
+            }
+            if (requested != null)
+            {
+                if ((conversion != X3dDoctypeCheck.Conversion.NONE) && (conversion != requested))
+                {
+                    System.out.println("*** [X3dDoctypeFixer] both -setFinalDTD and -setTransitionalDTD specified, only one operation allowed.");
+                    System.out.println(USAGE_MESSAGE);
+                    System.exit(1);
+                    return;
+                }
+                conversion = requested;
+            }
+        }
+        try {
+            System.out.println(fixDoctype(new File(args[0]), conversion, verbose).getLog());
+        } catch (IOException ioe) {
+            System.out.println("*** [X3dDoctypeFixer] unable to process " + args[0] + ": " + ioe.getLocalizedMessage());
+            System.exit(1);
+        }
+    }
+}
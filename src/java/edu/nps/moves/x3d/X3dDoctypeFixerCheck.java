@@ -0,0 +1,182 @@
+/*
+ * Filename:     X3dDoctypeFixerCheck.java
+ * Created:      17 OCT 2026
+ * Description:  Round-trip and file permission check for X3dDoctypeFixer
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import org.web3d.x3d.tools.X3dDoctypeChecker;
+
+/**
+ * Round-trip check for {@link X3dDoctypeFixer}: scenes with final X3D 3.0 and 3.1
+ * DOCTYPEs are converted to transitional DOCTYPEs through the command line, then
+ * back to final DOCTYPEs, and must end byte-identical to the original.  Each
+ * conversion must keep the scene's encoding and POSIX file permissions and leave no
+ * temporary file behind, and a check that needs no conversion must not rewrite the
+ * scene at all.  Scenes are generated in a temporary directory, covering UTF-8 and
+ * ISO-8859-1 encodings, CRLF line endings and non-default permissions.
+ *
+ * Invoked by Ant target verify.doctype.fixer.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class X3dDoctypeFixerCheck
+{
+    private static int failureCount = 0;
+
+    private static void expect(boolean condition, String sceneName, String description)
+    {
+        if (!condition)
+        {
+            failureCount++;
+            System.out.println("*** X3dDoctypeFixerCheck " + sceneName + ": " + description);
+        }
+    }
+
+    private static String newScene(String finalDoctype, Charset charset, String lineEnding)
+    {
+        return "<?xml version=\"1.0\" encoding=\"" + charset.name() + "\"?>" + lineEnding
+             + finalDoctype + ">" + lineEnding
+             + "<X3D profile='Immersive' version='3.0'>" + lineEnding
+             + "  <head>" + lineEnding
+             + "    <meta content='Café über ångström' name='description'/>" + lineEnding
+             + "  </head>" + lineEnding
+             + "  <Scene/>" + lineEnding
+             + "</X3D>" + lineEnding;
+    }
+
+    private static Set<PosixFilePermission> getPermissions(Path scenePath) throws IOException
+    {
+        try {
+            return Files.getPosixFilePermissions(scenePath);
+        } catch (UnsupportedOperationException uoe) {
+            return null; // not a POSIX file system, permissions are not compared
+        }
+    }
+
+    private static void checkRoundTrip(Path directory, String sceneName, String finalDoctype, String transitionalDoctype,
+            Charset charset, String lineEnding, String permissions) throws IOException
+    {
+        Path scenePath = directory.resolve(sceneName);
+        byte[] original = newScene(finalDoctype, charset, lineEnding).getBytes(charset);
+        Files.write(scenePath, original);
+        try {
+            Files.setPosixFilePermissions(scenePath, PosixFilePermissions.fromString(permissions));
+        } catch (UnsupportedOperationException uoe) {
+            // not a POSIX file system, default permissions apply
+        }
+        Set<PosixFilePermission> originalPermissions = getPermissions(scenePath);
+
+        // no conversion needed, so scene must not be rewritten
+        FileTime unchangedTime = FileTime.fromMillis(1000000000000L);
+        Files.setLastModifiedTime(scenePath, unchangedTime);
+        X3dDoctypeFixer.fixDoctype(scenePath.toFile(), X3dDoctypeCheck.Conversion.SET_FINAL_DTD, false);
+        expect(Files.getLastModifiedTime(scenePath).equals(unchangedTime), sceneName, "rewritten although DOCTYPE was already final");
+
+        // final to transitional, through command line
+        X3dDoctypeFixer.main(new String[] { scenePath.toString(), "-setTransitionalDTD" });
+        String transitionalScene = new String(Files.readAllBytes(scenePath), charset);
+        expect(transitionalScene.contains(transitionalDoctype + ">"), sceneName, "transitional DOCTYPE not written");
+        expect(transitionalScene.contains("Café über ångström"), sceneName, "content not kept in " + charset.name() + " encoding");
+        expect(Objects.equals(getPermissions(scenePath), originalPermissions), sceneName,
+                "permissions " + getPermissions(scenePath) + " differ from original " + originalPermissions + " after -setTransitionalDTD");
+
+        // transitional back to final
+        X3dDoctypeCheck.Result result = X3dDoctypeFixer.fixDoctype(scenePath.toFile(), X3dDoctypeCheck.Conversion.SET_FINAL_DTD, false);
+        expect(result.getRevisedScene() != null, sceneName, "no revision when converting back to final DOCTYPE");
+        expect(Arrays.equals(Files.readAllBytes(scenePath), original), sceneName, "round trip does not restore original bytes");
+        expect(Objects.equals(getPermissions(scenePath), originalPermissions), sceneName,
+                "permissions " + getPermissions(scenePath) + " differ from original " + originalPermissions + " after -setFinalDTD");
+
+        String[] remainingFiles = directory.toFile().list();
+        expect((remainingFiles != null) && (remainingFiles.length == 1), sceneName, "temporary files left behind: " + Arrays.toString(remainingFiles));
+        Files.delete(scenePath);
+    }
+
+    /**
+     * @param args none, scenes are generated
+     */
+    public static void main(String[] args)
+    {
+        int caseCount = 0;
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("X3dDoctypeFixerCheck");
+            checkRoundTrip(directory, "Final30Utf8.x3d",      X3dDoctypeChecker.FINAL_30_DOCTYPE, X3dDoctypeChecker.TRANSITIONAL_30_DOCTYPE,
+                    StandardCharsets.UTF_8,      "\n",   "rw-r--r--");
+            caseCount++;
+            checkRoundTrip(directory, "Final31Utf8Crlf.x3d",  X3dDoctypeChecker.FINAL_31_DOCTYPE, X3dDoctypeChecker.TRANSITIONAL_31_DOCTYPE,
+                    StandardCharsets.UTF_8,      "\r\n", "rw-r-----");
+            caseCount++;
+            checkRoundTrip(directory, "Final31Latin1.x3d",    X3dDoctypeChecker.FINAL_31_DOCTYPE, X3dDoctypeChecker.TRANSITIONAL_31_DOCTYPE,
+                    StandardCharsets.ISO_8859_1, "\n",   "rw-rw-r--");
+            caseCount++;
+        } catch (IOException ioe) {
+            failureCount++;
+            System.out.println("*** X3dDoctypeFixerCheck failed: " + ioe.getLocalizedMessage());
+        } finally {
+            if (directory != null)
+            {
+                File[] remainingFiles = directory.toFile().listFiles();
+                if (remainingFiles != null)
+                {
+                    for (File remainingFile : remainingFiles)
+                    {
+                        remainingFile.delete();
+                    }
+                }
+                directory.toFile().delete();
+            }
+        }
+        System.out.println("X3dDoctypeFixerCheck: " + caseCount + " round trips, " + failureCount + " failures");
+        if (failureCount > 0)
+        {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Filename:     X3dFieldTypeTable.java
+ * Created:      17 OCT 2026
+ * Description:  Table of numeric X3D field types for each node attribute, derived once per version from the X3D schema
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.xerces.dom.DOMXSImplementationSourceImpl;
+import org.apache.xerces.xs.XSAttributeUse;
+import org.apache.xerces.xs.XSComplexTypeDefinition;
+import org.apache.xerces.xs.XSConstants;
+import org.apache.xerces.xs.XSElementDeclaration;
+import org.apache.xerces.xs.XSImplementation;
+import org.apache.xerces.xs.XSLoader;
+import org.apache.xerces.xs.XSModel;
+import org.apache.xerces.xs.XSNamedMap;
+import org.apache.xerces.xs.XSObjectList;
+import org.apache.xerces.xs.XSTypeDefinition;
+
+/**
+ * Immutable lookup from X3D node name and attribute name to numeric X3D field type,
+ * for example Transform translation to SFVec3f.  Tables are derived from the X3D
+ * schema through the Xerces schema component model once per X3D version and then
+ * shared across requests, so that numeric checks can examine only attributes that
+ * are meant to hold numbers.
+ *
+ * An attribute's field type is the first name among its schema type and that type's
+ * base types which is a numeric X3D field type, so restricted types such as
+ * bounded floats resolve to their underlying field type.  The value of a prototype
+ * field declaration depends on its type attribute rather than on the schema, see
+ * {@link #getNumericFieldType(String)}.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public final class X3dFieldTypeTable
+{
+    /** X3D field types whose values consist of numbers only; SFImage and MFImage are excluded since they may hold hexadecimal pixels */
+    private static final String[] NUMERIC_FIELD_TYPES = {
+        "SFFloat",    "MFFloat",    "SFDouble",   "MFDouble",   "SFInt32",    "MFInt32",    "SFTime",     "MFTime",
+        "SFVec2f",    "MFVec2f",    "SFVec3f",    "MFVec3f",    "SFVec4f",    "MFVec4f",
+        "SFVec2d",    "MFVec2d",    "SFVec3d",    "MFVec3d",    "SFVec4d",    "MFVec4d",
+        "SFColor",    "MFColor",    "SFColorRGBA", "MFColorRGBA", "SFRotation", "MFRotation",
+        "SFMatrix3f", "MFMatrix3f", "SFMatrix4f", "MFMatrix4f", "SFMatrix3d", "MFMatrix3d", "SFMatrix4d", "MFMatrix4d"
+    };
+
+    private static final Map<String, String> numericFieldTypeMap = new HashMap<>(); // canonical name instances shared by all tables
+
+    static
+    {
+        for (String fieldType : NUMERIC_FIELD_TYPES)
+        {
+            numericFieldTypeMap.put(fieldType, fieldType);
+        }
+    }
+
+    private static final Map<String, X3dFieldTypeTable> tableMap = new ConcurrentHashMap<>();
+
+    /** node name to attribute name to numeric field type */
+    private final Map<String, Map<String, String>> nodeFieldTypes;
+
+    private final String x3dVersion;
+
+    private X3dFieldTypeTable(String x3dVersion, Map<String, Map<String, String>> nodeFieldTypes)
+    {
+        this.x3dVersion     = x3dVersion;
+        this.nodeFieldTypes = nodeFieldTypes;
+    }
+
+    /**
+     * Get field type table for an X3D version, deriving it from the schema on first use only.
+     * Problems are reported on the console rather than thrown, since callers fall back to
+     * checking scene text without field types.
+     *
+     * @param x3dVersion X3D version, for example 3.3
+     * @return shareable table, or null if version is not supported or schema cannot be loaded
+     */
+    public static X3dFieldTypeTable getTable(String x3dVersion)
+    {
+        if (!X3dSchemaCache.isSupportedVersion(x3dVersion))
+        {
+            return null;
+        }
+        X3dFieldTypeTable table = tableMap.get(x3dVersion);
+        if (table != null)
+        {
+            return table;
+        }
+        synchronized (tableMap) // only load schema once per version
+        {
+            table = tableMap.get(x3dVersion);
+            if (table == null)
+            {
+                table = load(x3dVersion);
+                if (table != null)
+                {
+                    tableMap.put(x3dVersion, table);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @param fieldType X3D field type name, for example SFVec3f
+     * @return interned field type name if it is numeric, otherwise null
+     */
+    public static String getNumericFieldType(String fieldType)
+    {
+        return (fieldType == null) ? null : numericFieldTypeMap.get(fieldType);
+    }
+
+    /**
+     * @param nodeName element name, for example Transform
+     * @return map from attribute name to numeric field type, empty if node has no numeric fields or is unknown
+     */
+    public Map<String, String> getNumericFields(String nodeName)
+    {
+        Map<String, String> fieldTypes = nodeFieldTypes.get(nodeName);
+        return (fieldTypes == null) ? Collections.<String, String>emptyMap() : fieldTypes;
+    }
+
+    /**
+     * @return X3D version this table was derived for
+     */
+    public String getX3dVersion()
+    {
+        return x3dVersion;
+    }
+
+    private static X3dFieldTypeTable load(String x3dVersion)
+    {
+        String schemaSystemId = "x3d-" + x3dVersion + ".xsd";
+        long startTime = System.nanoTime();
+        try {
+            schemaSystemId = X3dSchemaCache.getSchemaSystemId(x3dVersion);
+            XSImplementation xsImplementation = (XSImplementation) new DOMXSImplementationSourceImpl().getDOMImplementation("XS-Loader");
+            XSLoader xsLoader = xsImplementation.createXSLoader(null);
+            xsLoader.getConfig().setParameter("resource-resolver", new X3dSpecificationResolver());
+            XSModel xsModel = xsLoader.loadURI(schemaSystemId);
+            if (xsModel == null)
+            {
+                System.out.println("*** X3dFieldTypeTable unable to load " + schemaSystemId);
+                return null;
+            }
+            Map<String, Map<String, String>> nodeFieldTypes = new HashMap<>();
+            int fieldCount = 0;
+            XSNamedMap elementDeclarations = xsModel.getComponents(XSConstants.ELEMENT_DECLARATION);
+            for (int i = 0; i < elementDeclarations.getLength(); i++)
+            {
+                XSElementDeclaration elementDeclaration = (XSElementDeclaration) elementDeclarations.item(i);
+                if (elementDeclaration.getTypeDefinition().getTypeCategory() != XSTypeDefinition.COMPLEX_TYPE)
+                {
+                    continue;
+                }
+                Map<String, String> fieldTypes = new HashMap<>();
+                XSObjectList attributeUses = ((XSComplexTypeDefinition) elementDeclaration.getTypeDefinition()).getAttributeUses();
+                for (int j = 0; j < attributeUses.getLength(); j++)
+                {
+                    XSAttributeUse attributeUse = (XSAttributeUse) attributeUses.item(j);
+                    String fieldType = findNumericFieldType(attributeUse.getAttrDeclaration().getTypeDefinition());
+                    if (fieldType != null)
+                    {
+                        fieldTypes.put(attributeUse.getAttrDeclaration().getName(), fieldType);
+                    }
+                }
+                if (!fieldTypes.isEmpty())
+                {
+                    nodeFieldTypes.put(elementDeclaration.getName(), Collections.unmodifiableMap(fieldTypes));
+                    fieldCount += fieldTypes.size();
+                }
+            }
+            System.out.println("X3dFieldTypeTable derived " + fieldCount + " numeric fields of " + nodeFieldTypes.size() + " X3D " + x3dVersion
+                    + " nodes in " + ((System.nanoTime() - startTime) / 1000000) + " msec");
+            return new X3dFieldTypeTable(x3dVersion, Collections.unmodifiableMap(nodeFieldTypes));
+        } catch (IOException | RuntimeException e) {
+            System.out.println("*** X3dFieldTypeTable unable to derive field types from " + schemaSystemId + ": " + e);
+            return null;
+        }
+    }
+
+    /** walk from attribute type through its base types until a numeric X3D field type is named */
+    private static String findNumericFieldType(XSTypeDefinition typeDefinition)
+    {
+        XSTypeDefinition type = typeDefinition;
+        while (type != null)
+        {
+            String fieldType = getNumericFieldType(type.getName());
+            if (fieldType != null)
+            {
+                return fieldType;
+            }
+            XSTypeDefinition baseType = type.getBaseType();
+            if (baseType == type) // anyType is its own base
+            {
+                return null;
+            }
+            type = baseType;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Filename:     X3dGrammarPool.java
+ * Created:      17 OCT 2026
+ * Description:  Process-wide Xerces grammar pool so X3D DTDs are parsed once, not per request
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.SynchronizedSymbolTable;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Shares one Xerces grammar pool and symbol table across all DTD-aware parsers, so
+ * that the X3D DTDs with all their parameter entities are parsed once per process
+ * rather than once per request.  DTD validation cost is then dominated by the scene
+ * rather than the grammar.
+ *
+ * {@link #warmUp()} loads the DTD of every supported X3D version and then locks the
+ * pool, so that unusual DOCTYPEs seen afterwards are still honored but not cached,
+ * keeping the pool bounded.  Xerces only caches DTDs of documents without an
+ * internal subset, so scenes declaring their own entities are parsed as before.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public final class X3dGrammarPool
+{
+    private static final String FEATURE_VALIDATION = "http://xml.org/sax/features/validation";
+    private static final String FEATURE_NAMESPACES = "http://xml.org/sax/features/namespaces";
+
+    /** symbol table must be shared with grammar pool, since cached grammars refer to its symbols */
+    private static final SymbolTable symbolTable = new SynchronizedSymbolTable(new SymbolTable());
+
+    /** XMLGrammarPoolImpl synchronizes internally and is safe to share across threads */
+    private static final XMLGrammarPoolImpl grammarPool = new XMLGrammarPoolImpl();
+
+    private static volatile boolean locked = false;
+
+    private X3dGrammarPool()
+    {
+        // static utility class, no instances
+    }
+
+    /**
+     * Create a parser using the shared grammar pool, with namespace processing off to
+     * match the JAXP defaults previously used by the well-formed and DTD passes.
+     *
+     * @param validating whether DTD validation is performed
+     * @return new parser, not shareable between threads
+     * @throws SAXException if parser features cannot be set
+     */
+    public static XMLReader newXMLReader(boolean validating) throws SAXException
+    {
+        XMLReader xmlReader = new org.apache.xerces.parsers.SAXParser(symbolTable, grammarPool);
+        xmlReader.setFeature(FEATURE_VALIDATION, validating);
+        xmlReader.setFeature(FEATURE_NAMESPACES, false);
+        return xmlReader;
+    }
+
+    /**
+     * Parse a minimal scene for each supported X3D version so that every X3D DTD is
+     * cached, then lock the pool.  Problems are reported on the console rather than
+     * thrown, since an uncached DTD is simply parsed per request.
+     */
+    public static synchronized void warmUp()
+    {
+        if (locked)
+        {
+            return;
+        }
+        long startTime = System.nanoTime();
+        for (String x3dVersion : X3dSchemaCache.SUPPORTED_X3D_VERSIONS)
+        {
+            String minimalScene = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<!DOCTYPE X3D PUBLIC \"ISO//Web3D//DTD X3D " + x3dVersion + "//EN\" \"https://www.web3d.org/specifications/x3d-" + x3dVersion + ".dtd\">\n"
+                    + "<X3D profile='Core' version='" + x3dVersion + "'><Scene/></X3D>\n";
+            try {
+                XMLReader xmlReader = newXMLReader(true);
+                xmlReader.setEntityResolver(new X3dSpecificationResolver());
+                xmlReader.setErrorHandler(new DefaultHandler()); // validity of minimal scene is irrelevant, only the grammar matters
+                xmlReader.parse(new InputSource(new StringReader(minimalScene)));
+            } catch (IOException | SAXException e) {
+                System.out.println("*** X3dGrammarPool unable to load X3D " + x3dVersion + " DTD: " + e.getLocalizedMessage());
+            }
+        }
+        grammarPool.lockPool();
+        locked = true;
+        System.out.println("X3dGrammarPool warm-up complete in " + ((System.nanoTime() - startTime) / 1000000) + " msec");
+        System.out.println(getStatistics());
+    }
+
+    /**
+     * @return whether warm-up has completed and pool no longer accepts new grammars
+     */
+    public static boolean isLocked()
+    {
+        return locked;
+    }
+
+    /**
+     * @return one-line summary of pool contents for console logging
+     */
+    public static String getStatistics()
+    {
+        return "X3dGrammarPool: " + grammarPool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_DTD).length
+                + " DTD grammars cached, " + (locked ? "locked" : "unlocked");
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Filename:     X3dNumericFieldChecker.java
+ * Created:      17 OCT 2026
+ * Description:  Check numbers in numeric X3D fields only, as SAX events pass during the single validation parse
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Checks for malformed floats and leading zeroes in attributes whose X3D field type is
+ * numeric, while passing every SAX event on unchanged to the next content handler (if
+ * any).  Unlike the regular-expression checks over raw scene text, comments, Script
+ * bodies, meta content and string fields are never examined, so there are no false
+ * positives from them, and each finding names its element, attribute and field type.
+ *
+ * Attribute field types come from {@link X3dFieldTypeTable}.  Values of prototype
+ * field declarations are checked according to their type attribute, and fieldValue
+ * elements of a ProtoInstance according to the field declared by the prototype of
+ * that name, since prototypes are declared before they are instanced.
+ *
+ * One instance serves a single parse and is not thread-safe.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class X3dNumericFieldChecker extends XMLFilterImpl
+{
+    private final X3dFieldTypeTable fieldTypeTable;
+
+    private final StringBuilder garbledStringBuilder     = new StringBuilder();
+    private final StringBuilder leadingZeroStringBuilder = new StringBuilder();
+    private int garbledCount     = 0;
+    private int leadingZeroCount = 0;
+    private int checkedValueCount = 0;
+    private boolean complete = false;
+
+    private Locator locator;
+
+    /** prototype name to field name to numeric field type */
+    private final Map<String, Map<String, String>> prototypeFieldTypes = new HashMap<>();
+    private Map<String, String> currentPrototypeFields = null; // fields of ProtoDeclare or ExternProtoDeclare being read
+    private Map<String, String> currentInstanceFields  = null; // fields of prototype being instanced
+
+    /**
+     * @param fieldTypeTable numeric field types for X3D version of scene
+     */
+    public X3dNumericFieldChecker(X3dFieldTypeTable fieldTypeTable)
+    {
+        this.fieldTypeTable = fieldTypeTable;
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator)
+    {
+        this.locator = locator;
+        super.setDocumentLocator(locator);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException
+    {
+        switch (qName)
+        {
+            case "ProtoDeclare":
+            case "ExternProtoDeclare":
+                currentPrototypeFields = new HashMap<>();
+                prototypeFieldTypes.put(String.valueOf(attributes.getValue("name")), currentPrototypeFields);
+                break;
+            case "ProtoInstance":
+                currentInstanceFields = prototypeFieldTypes.get(String.valueOf(attributes.getValue("name")));
+                break;
+            case "field":
+                String fieldType = X3dFieldTypeTable.getNumericFieldType(attributes.getValue("type"));
+                if ((fieldType != null) && (currentPrototypeFields != null) && (attributes.getValue("name") != null))
+                {
+                    currentPrototypeFields.put(attributes.getValue("name"), fieldType);
+                }
+                checkValue(qName, attributes, "value", fieldType);
+                break;
+            case "fieldValue":
+                if ((currentInstanceFields != null) && (attributes.getValue("name") != null))
+                {
+                    checkValue(qName, attributes, "value", currentInstanceFields.get(attributes.getValue("name")));
+                }
+                break;
+            default:
+                Map<String, String> numericFields = fieldTypeTable.getNumericFields(qName);
+                if (!numericFields.isEmpty())
+                {
+                    for (int i = 0; i < attributes.getLength(); i++)
+                    {
+                        checkValue(qName, attributes, attributes.getQName(i), numericFields.get(attributes.getQName(i)));
+                    }
+                }
+        }
+        super.startElement(uri, localName, qName, attributes);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException
+    {
+        switch (qName)
+        {
+            case "ProtoInterface":
+            case "ExternProtoDeclare":
+                currentPrototypeFields = null; // field elements within ProtoBody belong to Script and shader nodes
+                break;
+            case "ProtoInstance":
+                currentInstanceFields = null;
+                break;
+            default:
+        }
+        super.endElement(uri, localName, qName);
+    }
+
+    @Override
+    public void endDocument() throws SAXException
+    {
+        complete = true;
+        super.endDocument();
+    }
+
+    private void checkValue(String elementName, Attributes attributes, String attributeName, String fieldType)
+    {
+        if (fieldType == null)
+        {
+            return;
+        }
+        String value = attributes.getValue(attributeName);
+        if ((value == null) || value.isEmpty())
+        {
+            return;
+        }
+        checkedValueCount++;
+        X3dNumericLexer.Findings findings = X3dNumericLexer.scanFieldValue(value);
+        for (int i = 0; i < findings.getGarbledCount(); i++)
+        {
+            garbledCount++;
+            appendFinding(garbledStringBuilder, elementName, attributes, attributeName, fieldType,
+                          value.substring(findings.getGarbledStart(i), findings.getGarbledEnd(i)));
+        }
+        for (int i = 0; i < findings.getLeadingZeroCount(); i++)
+        {
+            leadingZeroCount++;
+            appendFinding(leadingZeroStringBuilder, elementName, attributes, attributeName, fieldType,
+                          value.substring(findings.getLeadingZeroStart(i), findings.getLeadingZeroEnd(i)));
+        }
+    }
+
+    private void appendFinding(StringBuilder sb, String elementName, Attributes attributes, String attributeName, String fieldType, String number)
+    {
+        sb.append("-");
+        if (locator != null)
+        {
+            // SAX locates end of start tag, which is where attribute values have all been read
+            sb.append(" in line ").append(locator.getLineNumber()).append(" column ").append(locator.getColumnNumber()).append(",");
+        }
+        sb.append(" <").append(elementName);
+        String def = attributes.getValue("DEF");
+        if (def != null)
+        {
+            sb.append(" DEF='").append(def).append("'");
+        }
+        sb.append("> ").append(attributeName).append(" (").append(fieldType).append("): ").append(number).append("\n");
+    }
+
+    /**
+     * @return whether parse reached end of document, so that all numeric fields were examined
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * @return number of numeric attribute values examined
+     */
+    public int getCheckedValueCount()
+    {
+        return checkedValueCount;
+    }
+
+    /**
+     * Findings in the same form as X3dNumericValuesChecker, with element and attribute of each.
+     *
+     * @return diagnostic results, empty if no problems found
+     */
+    public String getResults()
+    {
+        StringBuilder results = new StringBuilder();
+        if (garbledCount > 0)
+        {
+            results.append("Found ").append(garbledCount).append(" malformed float groups:\n").append(garbledStringBuilder);
+        }
+        if (leadingZeroCount == 1)
+        {
+            results.append("Found ").append(leadingZeroCount).append(" leading-zero match:\n").append(leadingZeroStringBuilder);
+        }
+        else if (leadingZeroCount > 1)
+        {
+            results.append("Found ").append(leadingZeroCount).append(" leading-zero matches:\n").append(leadingZeroStringBuilder);
+        }
+        return results.toString();
+    }
+}
@@ -0,0 +1,691 @@
+/*
+ * Filename:     X3dNumericLexer.java
+ * Created:      17 OCT 2026
+ * Description:  Single-pass scanner for malformed and leading-zero numeric values, equivalent to REGEX_GARBLED_FLOATS and REGEX_LEADING_ZEROES
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package edu.nps.moves.x3d;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.web3d.x3d.tools.X3dToolsConstants;
+
+/**
+ * Finds malformed floating-point values and numbers with leading zeroes in one pass
+ * over scene text, reporting exactly the matches that
+ * {@link X3dToolsConstants#REGEX_GARBLED_FLOATS} and {@link X3dToolsConstants#REGEX_LEADING_ZEROES}
+ * report with Matcher.find(), without regex backtracking and without allocating per value.
+ *
+ * Both regular expressions have the form <code>D token D</code>, where delimiter D is
+ * whitespace, comma or quote and the token consists only of digits, '.', '+', '-', 'E'
+ * and 'e', none of which is a delimiter.  A match therefore always spans a complete run
+ * of such characters between two delimiters, so it is enough to classify each run with
+ * a small state machine per expression.  Since find() consumes the closing delimiter, a
+ * run whose opening delimiter closed the previous match of the same expression is not
+ * reported, just as with the regular expressions.
+ *
+ * Very large scenes can be scanned in parallel chunks with the same results, see
+ * {@link #scanParallel(CharSequence)}.  Run <code>main</code> to verify equivalence
+ * with the regular expressions on scene files and on randomly generated values, or
+ * with <code>-timing megabytes [maxThreads]</code> to time parallel scanning of a
+ * generated scene of that size at 1..maxThreads threads and several chunk lengths
+ * (Ant target benchmark.numeric.lexer).
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public final class X3dNumericLexer
+{
+    // REGEX_GARBLED_FLOATS token, alternative A:  (\+|-)?((\.\d+)|(\d+\.\d*))((E|e)?(\+|-)?\d+)?(\.|\+|-)+(\d*)
+    private static final int A_START        = 1;       // before optional sign
+    private static final int A_NUMBER       = 1 << 1;  // before mantissa
+    private static final int A_POINT_FIRST  = 1 << 2;  // after leading '.', digit required
+    private static final int A_FRACTION     = 1 << 3;  // digits after leading '.'
+    private static final int A_INTEGER      = 1 << 4;  // integer digits
+    private static final int A_POINT        = 1 << 5;  // '.' and optional digits after integer digits
+    private static final int A_AFTER_NUMBER = 1 << 6;  // mantissa complete, optional exponent follows
+    private static final int A_EXPONENT     = 1 << 7;  // after E or e
+    private static final int A_EXPONENT_SIGN= 1 << 8;  // after exponent sign, digit required
+    private static final int A_EXPONENT_DIGITS = 1 << 9;
+    private static final int A_GARBLE_FIRST = 1 << 10; // before required '.', '+' or '-'
+    private static final int A_GARBLE       = 1 << 11; // after garbling characters, accepting
+    private static final int A_TRAILING     = 1 << 12; // trailing digits, accepting
+    // REGEX_GARBLED_FLOATS token, alternative B:  \d+((\+|-)\d+)+
+    private static final int B_START        = 1 << 13;
+    private static final int B_DIGITS       = 1 << 14;
+    private static final int B_SIGN         = 1 << 15;
+    private static final int B_MORE_DIGITS  = 1 << 16; // accepting
+
+    private static final int GARBLED_ACCEPTING = A_GARBLE | A_TRAILING | B_MORE_DIGITS;
+    private static final int GARBLED_INITIAL   = A_START | A_NUMBER | B_START;
+
+    /** Matches found in one scan, as start (inclusive) and end (exclusive) offsets */
+    public static final class Findings
+    {
+        private int[] garbledOffsets      = new int[16];
+        private int   garbledCount        = 0;
+        private int[] leadingZeroOffsets  = new int[16];
+        private int   leadingZeroCount    = 0;
+
+        private void addGarbled(int start, int end)
+        {
+            if (2 * garbledCount + 2 > garbledOffsets.length)
+                garbledOffsets = Arrays.copyOf(garbledOffsets, 2 * garbledOffsets.length);
+            garbledOffsets[2 * garbledCount]     = start;
+            garbledOffsets[2 * garbledCount + 1] = end;
+            garbledCount++;
+        }
+
+        private void addLeadingZero(int start, int end)
+        {
+            if (2 * leadingZeroCount + 2 > leadingZeroOffsets.length)
+                leadingZeroOffsets = Arrays.copyOf(leadingZeroOffsets, 2 * leadingZeroOffsets.length);
+            leadingZeroOffsets[2 * leadingZeroCount]     = start;
+            leadingZeroOffsets[2 * leadingZeroCount + 1] = end;
+            leadingZeroCount++;
+        }
+
+        /** append findings of following part of text */
+        private void append(Findings following)
+        {
+            for (int i = 0; i < following.garbledCount; i++)
+                addGarbled(following.getGarbledStart(i), following.getGarbledEnd(i));
+            for (int i = 0; i < following.leadingZeroCount; i++)
+                addLeadingZero(following.getLeadingZeroStart(i), following.getLeadingZeroEnd(i));
+        }
+
+        /** @return number of malformed float matches */
+        public int getGarbledCount()            { return garbledCount; }
+        /** @param i match index @return start offset of match */
+        public int getGarbledStart(int i)       { return garbledOffsets[2 * i]; }
+        /** @param i match index @return end offset of match */
+        public int getGarbledEnd(int i)         { return garbledOffsets[2 * i + 1]; }
+        /** @return number of leading-zero matches */
+        public int getLeadingZeroCount()        { return leadingZeroCount; }
+        /** @param i match index @return start offset of match */
+        public int getLeadingZeroStart(int i)   { return leadingZeroOffsets[2 * i]; }
+        /** @param i match index @return end offset of match */
+        public int getLeadingZeroEnd(int i)     { return leadingZeroOffsets[2 * i + 1]; }
+    }
+
+    private X3dNumericLexer()
+    {
+        // static utility class, no instances
+    }
+
+    /** delimiter of both regular expressions: \s , " ' */
+    private static boolean isDelimiter(char c)
+    {
+        return (c == ' ') || (c == ',') || (c == '"') || (c == '\'') || (c == '\n') || (c == '\r') || (c == '\t') || (c == '\u000B') || (c == '\f');
+    }
+
+    /** character that may occur in a token of either regular expression */
+    private static boolean isTokenCharacter(char c)
+    {
+        return ((c >= '0') && (c <= '9')) || (c == '.') || (c == '+') || (c == '-') || (c == 'E') || (c == 'e');
+    }
+
+    /**
+     * Scan text for both kinds of numeric defect.
+     *
+     * @param text scene text
+     * @return offsets of all matches, in text order for each kind
+     */
+    public static Findings scan(CharSequence text)
+    {
+        return removeConsumedMatches(scanCandidates(text, 0, text.length()));
+    }
+
+    /**
+     * Scan text for both kinds of numeric defect, splitting long text into chunks that
+     * are scanned in parallel on the common fork-join pool.  Findings are identical to
+     * {@link #scan(CharSequence)}; text shorter than {@link #PARALLEL_CHUNK_LENGTH} is
+     * scanned on the calling thread.
+     *
+     * @param text scene text, which must not change while being scanned
+     * @return offsets of all matches, in text order for each kind
+     */
+    public static Findings scanParallel(CharSequence text)
+    {
+        return scanParallel(text, PARALLEL_CHUNK_LENGTH);
+    }
+
+    /**
+     * Characters per parallel scanning task.  Timing mode on a generated 256 MB scene
+     * showed per-task overhead lost in run-to-run noise for chunks of 64K to 16M
+     * characters, with serial scanning at about 64 MB/sec, so 1M characters keeps each
+     * task near 15 msec while letting scenes of a few MB use parallel scanning and
+     * giving large scenes enough tasks to balance across many threads.
+     */
+    public static final int PARALLEL_CHUNK_LENGTH = 1 << 20;
+
+    private static Findings scanParallel(CharSequence text, int chunkLength)
+    {
+        return scanParallel(text, chunkLength, ForkJoinPool.commonPool());
+    }
+
+    private static Findings scanParallel(CharSequence text, int chunkLength, ForkJoinPool forkJoinPool)
+    {
+        if (text.length() <= chunkLength)
+        {
+            return scan(text);
+        }
+        return removeConsumedMatches(forkJoinPool.invoke(new ChunkScanTask(text, 0, text.length(), chunkLength)));
+    }
+
+    /**
+     * Scans the runs beginning within one part of the text, splitting it in halves until
+     * parts are no longer than chunk length.  A run belongs to the part where it begins,
+     * and split points are moved past any run they would cut, so each run is classified
+     * exactly once.  Delimiters on either side of a run are read from the whole text, so
+     * neighbouring parts overlap by one character.
+     */
+    private static final class ChunkScanTask extends RecursiveTask<Findings>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence text;
+        private final int start;
+        private final int end;
+        private final int chunkLength;
+
+        ChunkScanTask(CharSequence text, int start, int end, int chunkLength)
+        {
+            this.text        = text;
+            this.start       = start;
+            this.end         = end;
+            this.chunkLength = chunkLength;
+        }
+
+        @Override
+        protected Findings compute()
+        {
+            if (end - start <= chunkLength)
+            {
+                return scanCandidates(text, start, end);
+            }
+            int split = start + (end - start) / 2;
+            while ((split < end) && isTokenCharacter(text.charAt(split)) && isTokenCharacter(text.charAt(split - 1)))
+            {
+                split++; // align to run boundary
+            }
+            if (split == end) // second half lies within one run
+            {
+                return scanCandidates(text, start, end);
+            }
+            ChunkScanTask secondHalf = new ChunkScanTask(text, split, end, chunkLength);
+            secondHalf.fork();
+            Findings findings = new ChunkScanTask(text, start, split, chunkLength).compute();
+            findings.append(secondHalf.join());
+            return findings;
+        }
+    }
+
+    /**
+     * Classify every run of token characters beginning at or after start and before end,
+     * reporting all matches, including those whose opening delimiter the regex would
+     * already have consumed.
+     */
+    private static Findings scanCandidates(CharSequence text, int start, int end)
+    {
+        Findings findings = new Findings();
+        int length = text.length();
+        int i = start; // never within a run, see ChunkScanTask
+        while (i < end)
+        {
+            if (!isTokenCharacter(text.charAt(i)))
+            {
+                i++;
+                continue;
+            }
+            int tokenStart = i;
+            while ((i < length) && isTokenCharacter(text.charAt(i)))
+            {
+                i++;
+            }
+            int tokenEnd = i; // exclusive, text.charAt(i) is not a token character
+            if ((tokenStart == 0) || (tokenEnd == length) ||
+                !isDelimiter(text.charAt(tokenStart - 1)) || !isDelimiter(text.charAt(tokenEnd)))
+            {
+                continue;
+            }
+            if (isGarbledFloat(text, tokenStart, tokenEnd))
+            {
+                findings.addGarbled(tokenStart - 1, tokenEnd + 1);
+            }
+            if (hasLeadingZero(text, tokenStart, tokenEnd))
+            {
+                findings.addLeadingZero(tokenStart - 1, tokenEnd + 1);
+            }
+        }
+        return findings;
+    }
+
+    /**
+     * Matcher.find() resumes after the closing delimiter of the previous match, so a match
+     * whose opening delimiter closed the previous match of the same expression is dropped.
+     */
+    private static Findings removeConsumedMatches(Findings candidates)
+    {
+        Findings findings = new Findings();
+        int searchFrom = 0;
+        for (int i = 0; i < candidates.getGarbledCount(); i++)
+        {
+            if (candidates.getGarbledStart(i) >= searchFrom)
+            {
+                findings.addGarbled(candidates.getGarbledStart(i), candidates.getGarbledEnd(i));
+                searchFrom = candidates.getGarbledEnd(i);
+            }
+        }
+        searchFrom = 0;
+        for (int i = 0; i < candidates.getLeadingZeroCount(); i++)
+        {
+            if (candidates.getLeadingZeroStart(i) >= searchFrom)
+            {
+                findings.addLeadingZero(candidates.getLeadingZeroStart(i), candidates.getLeadingZeroEnd(i));
+                searchFrom = candidates.getLeadingZeroEnd(i);
+            }
+        }
+        return findings;
+    }
+
+    /**
+     * Scan a single attribute value known to hold numbers, such as an SFVec3f or MFFloat
+     * field.  The beginning and end of the value count as delimiters, and unlike
+     * {@link #scan(CharSequence)} every defective number is reported, including one
+     * that directly follows another after a single delimiter.
+     *
+     * @param value attribute value, without quotes
+     * @return offsets of defective numbers themselves, excluding delimiters, in value order for each kind
+     */
+    public static Findings scanFieldValue(CharSequence value)
+    {
+        Findings findings = new Findings();
+        int length = value.length();
+        int i = 0;
+        while (i < length)
+        {
+            if (!isTokenCharacter(value.charAt(i)))
+            {
+                i++;
+                continue;
+            }
+            int tokenStart = i;
+            while ((i < length) && isTokenCharacter(value.charAt(i)))
+            {
+                i++;
+            }
+            int tokenEnd = i;
+            if (((tokenStart > 0) && !isDelimiter(value.charAt(tokenStart - 1))) ||
+                ((tokenEnd < length) && !isDelimiter(value.charAt(tokenEnd))))
+            {
+                continue;
+            }
+            if (isGarbledFloat(value, tokenStart, tokenEnd))
+            {
+                findings.addGarbled(tokenStart, tokenEnd);
+            }
+            if (hasLeadingZero(value, tokenStart, tokenEnd))
+            {
+                findings.addLeadingZero(tokenStart, tokenEnd);
+            }
+        }
+        return findings;
+    }
+
+    /** whether token matches ((\+|-)?((\.\d+)|(\d+\.\d*))((E|e)?(\+|-)?\d+)?(\.|\+|-)+(\d*))|(\d+((\+|-)\d+)+) in full */
+    private static boolean isGarbledFloat(CharSequence text, int start, int end)
+    {
+        int states = GARBLED_INITIAL;
+        for (int i = start; (i < end) && (states != 0); i++)
+        {
+            char c = text.charAt(i);
+            boolean digit = (c >= '0') && (c <= '9');
+            boolean sign  = (c == '+') || (c == '-');
+            int next = 0;
+            if (sign && ((states & A_START) != 0))
+                next |= A_NUMBER;
+            if ((states & A_NUMBER) != 0)
+            {
+                if (c == '.')  next |= A_POINT_FIRST;
+                if (digit)     next |= A_INTEGER;
+            }
+            if (digit && ((states & (A_POINT_FIRST | A_FRACTION)) != 0))
+                next |= A_FRACTION | A_AFTER_NUMBER | A_GARBLE_FIRST;
+            if ((states & A_INTEGER) != 0)
+            {
+                if (digit)     next |= A_INTEGER;
+                if (c == '.')  next |= A_POINT | A_AFTER_NUMBER | A_GARBLE_FIRST;
+            }
+            if (digit && ((states & A_POINT) != 0))
+                next |= A_POINT | A_AFTER_NUMBER | A_GARBLE_FIRST;
+            if ((states & A_AFTER_NUMBER) != 0)
+            {
+                if ((c == 'E') || (c == 'e')) next |= A_EXPONENT;
+                if (sign)      next |= A_EXPONENT_SIGN;
+                if (digit)     next |= A_EXPONENT_DIGITS | A_GARBLE_FIRST;
+            }
+            if ((states & A_EXPONENT) != 0)
+            {
+                if (sign)      next |= A_EXPONENT_SIGN;
+                if (digit)     next |= A_EXPONENT_DIGITS | A_GARBLE_FIRST;
+            }
+            if (digit && ((states & (A_EXPONENT_SIGN | A_EXPONENT_DIGITS)) != 0))
+                next |= A_EXPONENT_DIGITS | A_GARBLE_FIRST;
+            if (((c == '.') || sign) && ((states & (A_GARBLE_FIRST | A_GARBLE)) != 0))
+                next |= A_GARBLE;
+            if (digit && ((states & (A_GARBLE | A_TRAILING)) != 0))
+                next |= A_TRAILING;
+            if (digit && ((states & (B_START | B_DIGITS)) != 0))
+                next |= B_DIGITS;
+            if (sign && ((states & (B_DIGITS | B_MORE_DIGITS)) != 0))
+                next |= B_SIGN;
+            if (digit && ((states & (B_SIGN | B_MORE_DIGITS)) != 0))
+                next |= B_MORE_DIGITS;
+            states = next;
+        }
+        return (states & GARBLED_ACCEPTING) != 0;
+    }
+
+    /** whether token matches (\+|-)?0\d+(\.\d*)?((E|e)(\+|-)?\d+)? in full */
+    private static boolean hasLeadingZero(CharSequence text, int start, int end)
+    {
+        int i = start;
+        char c = text.charAt(i);
+        if ((c == '+') || (c == '-'))
+            i++;
+        if ((i >= end) || (text.charAt(i) != '0'))
+            return false;
+        i++;
+        int digitsStart = i;
+        while ((i < end) && isDigit(text.charAt(i)))
+            i++;
+        if (i == digitsStart)
+            return false; // a lone 0 is fine
+        if ((i < end) && (text.charAt(i) == '.'))
+        {
+            i++;
+            while ((i < end) && isDigit(text.charAt(i)))
+                i++;
+        }
+        if (i == end)
+            return true;
+        c = text.charAt(i);
+        if ((c != 'E') && (c != 'e'))
+            return false;
+        i++;
+        if ((i < end) && ((text.charAt(i) == '+') || (text.charAt(i) == '-')))
+            i++;
+        int exponentStart = i;
+        while ((i < end) && isDigit(text.charAt(i)))
+            i++;
+        return (i > exponentStart) && (i == end);
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return (c >= '0') && (c <= '9');
+    }
+
+    /**
+     * Verify that the scanner reports exactly the regular-expression matches, for each
+     * scene file named (directories are searched recursively) and for a generated corpus
+     * of random values.
+     *
+     * @param args scene files or directories, optionally preceded by -random count
+     * @throws IOException if a scene cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if ((args.length > 0) && args[0].equals("-timing"))
+        {
+            int megabytes  = (args.length > 1) ? Integer.parseInt(args[1]) : 256;
+            int maxThreads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            if (!timeParallelScan(megabytes, maxThreads))
+                System.exit(1);
+            return;
+        }
+        int randomCases = 200000;
+        List<File> sceneFiles = new ArrayList<>();
+        for (int a = 0; a < args.length; a++)
+        {
+            if (args[a].equals("-random") && (a + 1 < args.length))
+                randomCases = Integer.parseInt(args[++a]);
+            else if (new File(args[a]).exists())
+                addSceneFiles(new File(args[a]), sceneFiles);
+            else
+                System.out.println("X3dNumericLexer skipping " + args[a] + ", not found");
+        }
+        Pattern garbledPattern     = Pattern.compile(X3dToolsConstants.REGEX_GARBLED_FLOATS);
+        Pattern leadingZeroPattern = Pattern.compile(X3dToolsConstants.REGEX_LEADING_ZEROES);
+        int mismatches = 0;
+        long regexNanos = 0, lexerNanos = 0, parallelNanos = 0, totalCharacters = 0;
+        for (File sceneFile : sceneFiles)
+        {
+            String text = SceneSource.fromFile(sceneFile).getText();
+            totalCharacters += text.length();
+            long startTime = System.nanoTime();
+            List<Integer> garbled     = regexMatches(garbledPattern, text);
+            List<Integer> leadingZero = regexMatches(leadingZeroPattern, text);
+            regexNanos += System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            Findings findings = scan(text);
+            lexerNanos += System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            Findings parallelFindings = scanParallel(text);
+            parallelNanos += System.nanoTime() - startTime;
+            if (!agrees(findings, garbled, leadingZero) || !agrees(parallelFindings, garbled, leadingZero) ||
+                !agrees(scanParallel(text, 4096), garbled, leadingZero)) // many chunk boundaries
+            {
+                mismatches++;
+                System.out.println("*** mismatch in " + sceneFile);
+            }
+        }
+        Random random = new Random(3);
+        String alphabet = "0123456789.+-Ee, \"'x";
+        StringBuilder text = new StringBuilder();
+        StringBuilder allValues = new StringBuilder(); // all random values in sequence, for chunked scanning
+        for (int n = 0; n < randomCases; n++)
+        {
+            text.setLength(0);
+            int length = 1 + random.nextInt(14);
+            for (int k = 0; k < length; k++)
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            if (!agrees(scan(text), regexMatches(garbledPattern, text), regexMatches(leadingZeroPattern, text)))
+            {
+                mismatches++;
+                System.out.println("*** mismatch for [" + text + "]");
+            }
+            allValues.append(text);
+        }
+        List<Integer> allGarbled     = regexMatches(garbledPattern, allValues);
+        List<Integer> allLeadingZero = regexMatches(leadingZeroPattern, allValues);
+        for (int chunkLength : new int[] { 5, 64, 1024 })
+        {
+            if (!agrees(scanParallel(allValues, chunkLength), allGarbled, allLeadingZero))
+            {
+                mismatches++;
+                System.out.println("*** mismatch for random values scanned in chunks of " + chunkLength);
+            }
+        }
+        System.out.println("X3dNumericLexer verified " + sceneFiles.size() + " scenes (" + totalCharacters + " characters) and "
+                + randomCases + " random values, " + mismatches + " mismatches");
+        if (!sceneFiles.isEmpty())
+            System.out.println("regex " + (regexNanos / 1000000) + " msec, lexer " + (lexerNanos / 1000000) + " msec, parallel lexer " + (parallelNanos / 1000000) + " msec");
+        if (mismatches > 0)
+            System.exit(1);
+    }
+
+    /** chunk lengths compared by timing mode, bracketing {@link #PARALLEL_CHUNK_LENGTH} */
+    private static final int[] TIMING_CHUNK_LENGTHS = { 1 << 16, 1 << 18, 1 << 20, 1 << 22, 1 << 24 };
+
+    /**
+     * Time serial and parallel scanning of a generated scene at 1, 2, 4 ... maxThreads
+     * threads for each of {@link #TIMING_CHUNK_LENGTHS}, reporting the best of three runs.
+     *
+     * @return whether all parallel findings equal serial findings
+     */
+    private static boolean timeParallelScan(int megabytes, int maxThreads)
+    {
+        CharSequence text = generateTimingScene(megabytes * 1024 * 1024);
+        Findings serialFindings = scan(text); // also warms up
+        long serialNanos = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++)
+        {
+            long startTime = System.nanoTime();
+            scan(text);
+            serialNanos = Math.min(serialNanos, System.nanoTime() - startTime);
+        }
+        System.out.println("X3dNumericLexer timing " + text.length() + " characters, " + serialFindings.getGarbledCount() + " malformed floats, "
+                + serialFindings.getLeadingZeroCount() + " leading zeroes, " + Runtime.getRuntime().availableProcessors() + " processors available");
+        System.out.println(String.format("serial scan %d msec, %.0f MB/sec", serialNanos / 1000000, text.length() * 1000.0 / serialNanos));
+        StringBuilder header = new StringBuilder(String.format("%8s", "threads"));
+        for (int chunkLength : TIMING_CHUNK_LENGTHS)
+            header.append(String.format(" %13s", (chunkLength >> 10) + "K chars"));
+        System.out.println(header + "   (msec, speedup over serial)");
+        boolean agreement = true;
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2)
+            threadCounts.add(threads);
+        threadCounts.add(maxThreads);
+        for (int threads : threadCounts)
+        {
+            ForkJoinPool forkJoinPool = new ForkJoinPool(threads);
+            StringBuilder line = new StringBuilder(String.format("%8d", threads));
+            for (int chunkLength : TIMING_CHUNK_LENGTHS)
+            {
+                long bestNanos = Long.MAX_VALUE;
+                for (int run = 0; run < 3; run++)
+                {
+                    long startTime = System.nanoTime();
+                    Findings findings = scanParallel(text, chunkLength, forkJoinPool);
+                    bestNanos = Math.min(bestNanos, System.nanoTime() - startTime);
+                    if ((run == 0) && !sameFindings(findings, serialFindings))
+                    {
+                        agreement = false;
+                        System.out.println("*** parallel findings differ from serial findings, " + threads + " threads, chunk length " + chunkLength);
+                    }
+                }
+                line.append(String.format(" %6d %5.2fx", bestNanos / 1000000, (double) serialNanos / bestNanos));
+            }
+            System.out.println(line);
+            forkJoinPool.shutdown();
+        }
+        return agreement;
+    }
+
+    /** Coordinate and color arrays of random values, one value in a thousand malformed or with leading zeroes */
+    private static CharSequence generateTimingScene(int length)
+    {
+        Random random = new Random(7);
+        String[] defects = { "1.2.3", "007", "0.5..", "1e", "00.25", "+-1" };
+        StringBuilder text = new StringBuilder(length + 256);
+        text.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<X3D profile='Interchange' version='3.3'>\n  <Scene>\n");
+        while (text.length() < length)
+        {
+            text.append("    <Shape>\n      <IndexedFaceSet>\n        <Coordinate point='");
+            for (int n = 0; n < 3000; n++)
+            {
+                if (random.nextInt(1000) == 0)
+                    text.append(defects[random.nextInt(defects.length)]);
+                else
+                    text.append(random.nextInt(2000) - 1000).append('.').append(random.nextInt(1000));
+                text.append(((n % 3) == 2) ? ", " : " ");
+            }
+            text.append("'/>\n      </IndexedFaceSet>\n    </Shape>\n");
+        }
+        text.append("  </Scene>\n</X3D>\n");
+        return text;
+    }
+
+    private static boolean sameFindings(Findings findings, Findings expected)
+    {
+        if ((findings.getGarbledCount() != expected.getGarbledCount()) || (findings.getLeadingZeroCount() != expected.getLeadingZeroCount()))
+            return false;
+        for (int i = 0; i < findings.getGarbledCount(); i++)
+            if ((findings.getGarbledStart(i) != expected.getGarbledStart(i)) || (findings.getGarbledEnd(i) != expected.getGarbledEnd(i)))
+                return false;
+        for (int i = 0; i < findings.getLeadingZeroCount(); i++)
+            if ((findings.getLeadingZeroStart(i) != expected.getLeadingZeroStart(i)) || (findings.getLeadingZeroEnd(i) != expected.getLeadingZeroEnd(i)))
+                return false;
+        return true;
+    }
+
+    private static void addSceneFiles(File file, List<File> sceneFiles)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            Arrays.sort(children);
+            for (File child : children)
+                addSceneFiles(child, sceneFiles);
+        }
+        else if (file.getName().endsWith(".x3d"))
+            sceneFiles.add(file);
+    }
+
+    private static List<Integer> regexMatches(Pattern pattern, CharSequence text)
+    {
+        List<Integer> offsets = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find())
+        {
+            offsets.add(matcher.start());
+            offsets.add(matcher.end());
+        }
+        return offsets;
+    }
+
+    private static boolean agrees(Findings findings, List<Integer> garbled, List<Integer> leadingZero)
+    {
+        if ((2 * findings.getGarbledCount() != garbled.size()) || (2 * findings.getLeadingZeroCount() != leadingZero.size()))
+            return false;
+        for (int i = 0; i < findings.getGarbledCount(); i++)
+            if ((findings.getGarbledStart(i) != garbled.get(2 * i)) || (findings.getGarbledEnd(i) != garbled.get(2 * i + 1)))
+                return false;
+        for (int i = 0; i < findings.getLeadingZeroCount(); i++)
+            if ((findings.getLeadingZeroStart(i) != leadingZero.get(2 * i)) || (findings.getLeadingZeroEnd(i) != leadingZero.get(2 * i + 1)))
+                return false;
+        return true;
+    }
+}
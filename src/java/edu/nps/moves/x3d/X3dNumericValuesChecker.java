@@ -0,0 +1,120 @@
+/*
+ * Filename:     X3dNumericValuesChecker.java
+ * Created:      17 OCT 2026
+ * Description:  Report malformed and leading-zero numeric values in scene text, as X3dValuesRegexChecker does
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+/**
+ * Reports malformed floating-point values and numbers with leading zeroes anywhere in
+ * scene text, with the same matches and message text as
+ * {@link org.web3d.x3d.tools.X3dValuesRegexChecker}.  That class remains an unmodified
+ * copy of the X3D tools master, refreshed by Ant target getX3dTools, so the validator's
+ * own checker lives here.
+ *
+ * Matches are found by {@link X3dNumericLexer} in a single pass, in parallel chunks for
+ * very large scenes, and are located by a {@link LineIndex} over the scene already in
+ * memory rather than by reading the file again.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class X3dNumericValuesChecker
+{
+    private final String    scene;
+    private final LineIndex lineIndex;
+
+    /**
+     * @param sceneSource scene content, already read
+     */
+    public X3dNumericValuesChecker(SceneSource sceneSource)
+    {
+        scene     = sceneSource.getText();
+        lineIndex = new LineIndex(scene);
+    }
+
+    /**
+     * perform diagnostics
+     * @return diagnostic results, empty if no defects found
+     */
+    public String processScene()
+    {
+        X3dNumericLexer.Findings findings = X3dNumericLexer.scanParallel(scene); // one pass for both checks, same matches as regexes
+        return detectMalformedFloats(findings) + detectLeadingZeroes(findings);
+    }
+
+    private String reportLineCharacterCounts(int fileCharCount)
+    {
+        return " in line " + lineIndex.getLine(fileCharCount) + " column " + lineIndex.getColumn(fileCharCount) + ": ";
+    }
+
+    private String detectMalformedFloats(X3dNumericLexer.Findings findings)
+    {
+        StringBuilder sb = new StringBuilder();
+        int numberMatchesFound = findings.getGarbledCount(); // matches of REGEX_GARBLED_FLOATS
+        for (int i = 0; i < numberMatchesFound; i++)
+        {
+            int start = findings.getGarbledStart(i);
+            sb.append("-")
+              .append(reportLineCharacterCounts(start))
+              .append(scene, start, findings.getGarbledEnd(i))
+              .append("\n");
+        }
+        if (numberMatchesFound > 0)
+            return "Found " + numberMatchesFound + " malformed float groups:\n" + sb.toString();
+        else // 0
+            return ""; // valid, no response needed
+    }
+
+    private String detectLeadingZeroes(X3dNumericLexer.Findings findings)
+    {
+        StringBuilder sb = new StringBuilder();
+        int numberMatchesFound = findings.getLeadingZeroCount(); // matches of REGEX_LEADING_ZEROES
+        for (int i = 0; i < numberMatchesFound; i++)
+        {
+            int start = findings.getLeadingZeroStart(i);
+            sb.append("-")
+              .append(reportLineCharacterCounts(start))
+              .append(scene, start, findings.getLeadingZeroEnd(i))
+              .append("\n");
+        }
+        if      (numberMatchesFound == 1)
+            return "Found " + numberMatchesFound + " leading-zero match:\n"   + sb.toString();
+        else if (numberMatchesFound > 1)
+            return "Found " + numberMatchesFound + " leading-zero matches:\n" + sb.toString();
+        else // 0
+            return ""; // valid, no response needed
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Filename:     X3dSchemaCache.java
+ * Created:      17 OCT 2026
+ * Description:  Compile each X3D schema once and share it across all validation requests
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Compiles one {@link Schema} per supported X3D version and shares it across all
+ * requests.  Schema compilation is the most expensive step Xerces performs for the
+ * validator, and compiled Schema objects are immutable and thread-safe, so each
+ * request only creates its own cheap ValidatorHandler from the cached Schema.
+ *
+ * The schema is selected from the scene's xsd:noNamespaceSchemaLocation hint, and
+ * only when that hint names a published X3D schema, so that results match validation
+ * driven by the hint itself.  Scenes without such a hint are left to that validation,
+ * see {@link #getSchemaLocationVersion(String)}.  Schemas are read from
+ * bundled copies via {@link X3dSpecificationResolver}; a missing copy is a
+ * compilation failure, never a fetch from www.web3d.org.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public final class X3dSchemaCache
+{
+    /** X3D versions having a published schema */
+    public static final String[] SUPPORTED_X3D_VERSIONS = { "3.0", "3.1", "3.2", "3.3", "4.0", "4.1" };
+
+    /** version attribute of X3D root element, single or double quoted */
+    private static final Pattern X3D_VERSION_PATTERN = Pattern.compile("<X3D\\s[^>]*?\\bversion\\s*=\\s*[\"']([^\"']*)[\"']");
+
+    /** xsd:noNamespaceSchemaLocation attribute of X3D root element naming a published X3D schema, http or https */
+    private static final Pattern SCHEMA_LOCATION_PATTERN = Pattern.compile(
+            "<X3D\\s[^>]*?\\bxsd:noNamespaceSchemaLocation\\s*=\\s*[\"']https?://www\\.web3d\\.org/specifications/x3d-(\\d+\\.\\d+)\\.xsd[\"']");
+
+    private static final Map<String, Schema> schemaMap = new ConcurrentHashMap<>();
+
+    private static final AtomicLong hitCount         = new AtomicLong();
+    private static final AtomicLong compileCount     = new AtomicLong();
+    private static final AtomicLong compileTimeNanos = new AtomicLong();
+
+    private X3dSchemaCache()
+    {
+        // static utility class, no instances
+    }
+
+    /**
+     * @param x3dVersion X3D version, for example 3.3
+     * @return whether a schema exists for this version
+     */
+    public static boolean isSupportedVersion(String x3dVersion)
+    {
+        for (String supportedVersion : SUPPORTED_X3D_VERSIONS)
+        {
+            if (supportedVersion.equals(x3dVersion))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find version attribute of X3D element in scene text.
+     *
+     * @param x3dText scene text, or at least its beginning through the X3D start tag
+     * @return trimmed version value, or empty string if not found
+     */
+    public static String getX3dVersion(String x3dText)
+    {
+        Matcher matcher = X3D_VERSION_PATTERN.matcher(x3dText);
+        if (matcher.find())
+        {
+            return matcher.group(1).trim();
+        }
+        return "";
+    }
+
+    /**
+     * Find X3D version of the schema named by the xsd:noNamespaceSchemaLocation hint of
+     * the X3D element.  Hints naming some other schema, and scenes without a hint, give
+     * an empty string, so that {@link #getSchema(String)} returns null and validation
+     * follows the hint (or its absence) as written.
+     *
+     * @param x3dText scene text, or at least its beginning through the X3D start tag
+     * @return version of published X3D schema named by hint, or empty string if none
+     */
+    public static String getSchemaLocationVersion(String x3dText)
+    {
+        Matcher matcher = SCHEMA_LOCATION_PATTERN.matcher(x3dText);
+        if (matcher.find())
+        {
+            return matcher.group(1);
+        }
+        return "";
+    }
+
+    /**
+     * Get compiled schema for an X3D version, compiling it on first use only.
+     *
+     * @param x3dVersion X3D version, for example 3.3
+     * @return shareable compiled schema, or null if version is not supported
+     * @throws SAXException if schema cannot be read or fails to compile
+     */
+    public static Schema getSchema(String x3dVersion) throws SAXException
+    {
+        if (!isSupportedVersion(x3dVersion))
+        {
+            return null;
+        }
+        Schema schema = schemaMap.get(x3dVersion);
+        if (schema != null)
+        {
+            hitCount.incrementAndGet();
+            return schema;
+        }
+        synchronized (schemaMap) // only compile once, SchemaFactory is not thread-safe
+        {
+            schema = schemaMap.get(x3dVersion);
+            if (schema != null)
+            {
+                hitCount.incrementAndGet();
+                return schema;
+            }
+            schema = compile(x3dVersion);
+            schemaMap.put(x3dVersion, schema);
+        }
+        return schema;
+    }
+
+    /**
+     * @param x3dVersion X3D version, for example 3.3
+     * @return system identifier of bundled schema copy
+     * @throws FileNotFoundException if schema is not bundled
+     */
+    static String getSchemaSystemId(String x3dVersion) throws FileNotFoundException
+    {
+        return X3dSpecificationResolver.requireSpecificationUrl("x3d-" + x3dVersion + ".xsd").toExternalForm();
+    }
+
+    private static Schema compile(String x3dVersion) throws SAXException
+    {
+        String schemaName = "x3d-" + x3dVersion + ".xsd";
+        String schemaSystemId;
+        try {
+            schemaSystemId = getSchemaSystemId(x3dVersion);
+        } catch (FileNotFoundException fnfe) {
+            throw new SAXException(fnfe.getLocalizedMessage(), fnfe);
+        }
+        System.out.println("X3dSchemaCache compiling " + schemaSystemId + "...");
+        long startTime = System.nanoTime();
+
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        schemaFactory.setResourceResolver(new X3dSpecificationResolver());
+        Schema schema;
+        try {
+            schema = schemaFactory.newSchema(new StreamSource(schemaSystemId));
+        } catch (UncheckedIOException uioe) { // included schema not bundled
+            throw new SAXException(uioe.getCause().getLocalizedMessage(), uioe.getCause());
+        }
+
+        long elapsedTime = System.nanoTime() - startTime;
+        compileCount.incrementAndGet();
+        compileTimeNanos.addAndGet(elapsedTime);
+        System.out.println("X3dSchemaCache compiled " + schemaName + " in " + (elapsedTime / 1000000) + " msec");
+        return schema;
+    }
+
+    /**
+     * Compile all supported X3D schemas ahead of the first request.
+     * Problems are reported on the console rather than thrown.
+     *
+     * @return number of schemas that failed to compile
+     */
+    public static int precompileAll()
+    {
+        int failureCount = 0;
+        for (String x3dVersion : SUPPORTED_X3D_VERSIONS)
+        {
+            try {
+                getSchema(x3dVersion);
+            } catch (SAXException saxe) {
+                failureCount++;
+                System.out.println("*** X3dSchemaCache unable to precompile X3D " + x3dVersion + " schema: " + saxe.getLocalizedMessage());
+            }
+        }
+        System.out.println(getStatistics());
+        return failureCount;
+    }
+
+    /**
+     * @return one-line summary of cache counters for console logging
+     */
+    public static String getStatistics()
+    {
+        return "X3dSchemaCache: " + schemaMap.size() + " schemas, " + hitCount.get() + " hits, "
+                + compileCount.get() + " compiles, " + (compileTimeNanos.get() / 1000000) + " msec total compile time";
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Filename:     X3dSpecificationResolver.java
+ * Created:      17 OCT 2026
+ * Description:  Resolve X3D DTD and schema references to copies bundled in classpath directory /specifications/
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.apache.xerces.dom.DOMInputImpl;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.ext.EntityResolver2;
+
+/**
+ * Stateless resolver mapping X3D DTD and schema references to copies bundled under
+ * classpath directory /specifications/, so that validation needs no network round
+ * trips and can run air-gapped.  Bundled copies are retrieved by Ant target
+ * getX3dSpecifications.
+ *
+ * A system identifier resolves to a bundled copy when its final path segment names
+ * a bundled file, regardless of host or scheme.  This covers https and http
+ * references to www.web3d.org, transitional file:/// DOCTYPEs, and relative
+ * references from one bundled file to another (such as extension DTDs and included
+ * schemas).  Otherwise the public identifier "ISO//Web3D//DTD X3D n.n//EN" selects
+ * the bundled DTD for that version.
+ *
+ * A reference to a published X3D DTD or schema that has no bundled copy is an
+ * error, reported as {@link FileNotFoundException} (unchecked
+ * {@link UncheckedIOException} from {@link #resolveResource}), rather than a silent
+ * network fetch: missing copies mean the build skipped getX3dSpecifications.
+ * Anything else returns null so that the parser falls back to its standard
+ * resolution, using the network if needed.
+ *
+ * Implements both SAX {@link EntityResolver2} for DTD and schema location hints seen
+ * by SAX parsers, and DOM {@link LSResourceResolver} for javax.xml.validation
+ * SchemaFactory and Validator.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class X3dSpecificationResolver implements EntityResolver2, LSResourceResolver
+{
+    /** classpath directory holding bundled DTDs and schemas */
+    public static final String SPECIFICATION_BASE_IN_CLASSPATH = "/specifications/";
+
+    private static final String X3D_PUBLIC_ID_PREFIX = "ISO//Web3D//DTD X3D ";
+    private static final String X3D_PUBLIC_ID_SUFFIX = "//EN";
+
+    /** file names of published X3D DTDs and schemas, which are always expected to be bundled */
+    private static final Pattern X3D_SPECIFICATION_NAME_PATTERN = Pattern.compile("x3d-\\d\\.\\d(-Web3dExtensions(Public|Private))?\\.(dtd|xsd)");
+
+    /** network fallbacks already reported, so that console is not flooded with one line per request */
+    private static final Set<String> reportedFallbacks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Get classpath URL of a bundled DTD or schema.
+     *
+     * @param specificationName file name, for example x3d-3.3.dtd or x3d-4.0.xsd
+     * @return URL of bundled copy, or null if not bundled
+     */
+    public static URL getSpecificationUrl(String specificationName)
+    {
+        if ((specificationName == null) || specificationName.isEmpty())
+        {
+            return null;
+        }
+        return X3dSpecificationResolver.class.getResource(SPECIFICATION_BASE_IN_CLASSPATH + specificationName);
+    }
+
+    /**
+     * Find bundled copy for a reference, checking system identifier before public identifier.
+     *
+     * @param publicId public identifier, may be null
+     * @param systemId system identifier, absolute or relative, may be null
+     * @return URL of bundled copy, or null if reference is not to a published X3D DTD or schema
+     * @throws FileNotFoundException if reference is to a published X3D DTD or schema that is not bundled
+     */
+    public static URL findBundledCopy(String publicId, String systemId) throws FileNotFoundException
+    {
+        String specificationName = null;
+        URL bundledUrl = null;
+        if ((systemId != null) && !systemId.isEmpty())
+        {
+            String lastSegment = systemId.substring(systemId.lastIndexOf('/') + 1);
+            bundledUrl = getSpecificationUrl(lastSegment);
+            if (X3D_SPECIFICATION_NAME_PATTERN.matcher(lastSegment).matches())
+            {
+                specificationName = lastSegment;
+            }
+        }
+        if ((bundledUrl == null) && (publicId != null) &&
+             publicId.startsWith(X3D_PUBLIC_ID_PREFIX) && publicId.endsWith(X3D_PUBLIC_ID_SUFFIX))
+        {
+            String version = publicId.substring(X3D_PUBLIC_ID_PREFIX.length(), publicId.length() - X3D_PUBLIC_ID_SUFFIX.length()).trim();
+            bundledUrl = getSpecificationUrl("x3d-" + version + ".dtd");
+            if (specificationName == null)
+            {
+                specificationName = "x3d-" + version + ".dtd";
+            }
+        }
+        if ((bundledUrl == null) && (specificationName != null))
+        {
+            throw newMissingCopyException(specificationName, publicId, systemId);
+        }
+        if ((bundledUrl == null) && (systemId != null) && reportedFallbacks.add(systemId))
+        {
+            System.out.println("X3dSpecificationResolver has no bundled copy of publicId=" + publicId + " systemId=" + systemId + ", using standard resolution");
+        }
+        return bundledUrl;
+    }
+
+    /**
+     * Get classpath URL of a bundled DTD or schema that must be present.
+     *
+     * @param specificationName file name of published X3D DTD or schema, for example x3d-3.3.xsd
+     * @return URL of bundled copy
+     * @throws FileNotFoundException if not bundled
+     */
+    public static URL requireSpecificationUrl(String specificationName) throws FileNotFoundException
+    {
+        URL bundledUrl = getSpecificationUrl(specificationName);
+        if (bundledUrl == null)
+        {
+            throw newMissingCopyException(specificationName, null, specificationName);
+        }
+        return bundledUrl;
+    }
+
+    private static FileNotFoundException newMissingCopyException(String specificationName, String publicId, String systemId)
+    {
+        String message = "no bundled copy of X3D specification " + specificationName + " (publicId=" + publicId + " systemId=" + systemId
+                + ") in classpath " + SPECIFICATION_BASE_IN_CLASSPATH + ", run Ant target getX3dSpecifications before building";
+        System.out.println("*** X3dSpecificationResolver " + message);
+        return new FileNotFoundException(message);
+    }
+
+    private static InputSource newInputSource(String publicId, URL bundledUrl) throws IOException
+    {
+        InputSource inputSource = new InputSource(bundledUrl.toExternalForm()); // system ID lets relative references resolve among bundled copies
+        inputSource.setPublicId(publicId);
+        inputSource.setByteStream(bundledUrl.openStream());
+        return inputSource;
+    }
+
+    @Override
+    public InputSource resolveEntity(String publicId, String systemId) throws IOException
+    {
+        return resolveEntity(null, publicId, null, systemId);
+    }
+
+    @Override
+    public InputSource resolveEntity(String name, String publicId, String baseURI, String systemId) throws IOException
+    {
+        URL bundledUrl = findBundledCopy(publicId, systemId);
+        if (bundledUrl == null)
+        {
+            return null;
+        }
+        return newInputSource(publicId, bundledUrl);
+    }
+
+    @Override
+    public InputSource getExternalSubset(String name, String baseURI)
+    {
+        return null; // documents without DOCTYPE are not given one
+    }
+
+    @Override
+    public LSInput resolveResource(String type, String namespaceURI, String publicId, String systemId, String baseURI)
+    {
+        URL bundledUrl;
+        try {
+            bundledUrl = findBundledCopy(publicId, systemId);
+        } catch (FileNotFoundException fnfe) {
+            throw new UncheckedIOException(fnfe); // LSResourceResolver cannot throw checked exceptions
+        }
+        if (bundledUrl == null)
+        {
+            return null;
+        }
+        try {
+            InputStream inputStream = bundledUrl.openStream();
+            return new DOMInputImpl(publicId, bundledUrl.toExternalForm(), baseURI, inputStream, null);
+        } catch (IOException ioe) {
+            System.out.println("*** X3dSpecificationResolver unable to open " + bundledUrl + ": " + ioe.getLocalizedMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Filename:     XhtmlBodyExtractor.java
+ * Created:      17 OCT 2026
+ * Description:  Stream body content of X3dToXhtml.xslt output directly to a Writer
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import org.xml.sax.InputSource;
+
+/**
+ * Writer that receives the serialized XHTML document produced by X3dToXhtml.xslt
+ * and forwards only the text between its first &lt;body&gt; and &lt;/body&gt; tags
+ * to the response.  This replaces rendering the whole document into a String and
+ * taking a substring, so memory use no longer grows with scene size.
+ *
+ * Filtering serialized characters rather than SAX events leaves serialization to
+ * the stylesheet's own xsl:output settings, so the streamed listing is identical
+ * to the previous substring excerpt, including disable-output-escaping text such
+ * as tooltip markup and cdata-section-elements.
+ *
+ * {@link #main(String[])} verifies this equivalence, see Ant target verify.xhtml.listing.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class XhtmlBodyExtractor extends Writer
+{
+    private static final String BODY_START_TAG = "<body>";
+    private static final String BODY_END_TAG   = "</body>";
+
+    /** scene whose listing includes node and field tooltips, which rely on disable-output-escaping */
+    private static final String TOOLTIP_SCENE =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<X3D profile='Immersive' version='3.3'>\n"
+          + "  <head><meta name='title' content='TooltipListing.x3d'/></head>\n"
+          + "  <Scene>\n"
+          + "    <WorldInfo title='TooltipListing.x3d'/>\n"
+          + "    <Transform DEF='Mover' translation='0 1 0'>\n"
+          + "      <Shape><Box size='1 2 3'/><Appearance><Material diffuseColor='1 0 0'/></Appearance></Shape>\n"
+          + "    </Transform>\n"
+          + "    <TimeSensor DEF='Clock' cycleInterval='4' loop='true'/>\n"
+          + "    <PositionInterpolator DEF='Path' key='0 1' keyValue='0 0 0 0 1 0'/>\n"
+          + "    <ROUTE fromNode='Clock' fromField='fraction_changed' toNode='Path' toField='set_fraction'/>\n"
+          + "    <ROUTE fromNode='Path' fromField='value_changed' toNode='Mover' toField='set_translation'/>\n"
+          + "  </Scene>\n"
+          + "</X3D>\n";
+
+    private final Writer writer;
+
+    private int     matchedLength = 0;     // characters of body start or end tag matched so far, held back until known
+    private boolean bodyStarted   = false;
+    private boolean bodyCompleted = false; // only first body element is extracted
+
+    /**
+     * @param writer destination for body content, not closed by this filter
+     */
+    public XhtmlBodyExtractor(Writer writer)
+    {
+        this.writer = writer;
+    }
+
+    /**
+     * @return StreamResult for use as transformation output, serialized per stylesheet xsl:output
+     */
+    public StreamResult newResult()
+    {
+        return new StreamResult(this);
+    }
+
+    /**
+     * @return whether a complete body element was found and forwarded
+     */
+    public boolean isBodyCompleted()
+    {
+        return bodyCompleted;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException
+    {
+        int end      = offset + length;
+        int runStart = offset; // start of characters not yet forwarded or discarded
+        for (int i = offset; (i < end) && !bodyCompleted; i++)
+        {
+            char c = buffer[i];
+            if ((matchedLength == 0) && (c != '<'))
+            {
+                continue; // ordinary character, part of current run
+            }
+            forwardRun(buffer, runStart, i);
+            String tag = bodyStarted ? BODY_END_TAG : BODY_START_TAG;
+            if (c == tag.charAt(matchedLength))
+            {
+                matchedLength++;
+                runStart = i + 1;
+                if (matchedLength == tag.length())
+                {
+                    matchedLength = 0;
+                    if (bodyStarted)
+                        bodyCompleted = true;
+                    else
+                        bodyStarted   = true;
+                }
+            }
+            else // partial match was ordinary text after all
+            {
+                if (bodyStarted)
+                {
+                    writer.write(tag, 0, matchedLength);
+                }
+                // tags contain '<' only as first character, so current character can only begin a new match
+                matchedLength = (c == '<') ? 1 : 0;
+                runStart      = (c == '<') ? i + 1 : i;
+            }
+        }
+        if (!bodyCompleted)
+        {
+            forwardRun(buffer, runStart, end);
+        }
+    }
+
+    private void forwardRun(char[] buffer, int start, int end) throws IOException
+    {
+        if (bodyStarted && (end > start))
+        {
+            writer.write(buffer, start, end - start);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        writer.flush();
+    }
+
+    /** flushes destination writer, leaving it open */
+    @Override
+    public void close() throws IOException
+    {
+        writer.flush();
+    }
+
+    /**
+     * Check that the streamed listing equals the substring excerpt of the fully
+     * rendered X3dToXhtml.xslt output, for a built-in scene with node and field
+     * tooltips and for any scene files or directories given.
+     * Exits with status 1 if any listing differs.
+     *
+     * @param args scene files or directories, optional
+     */
+    public static void main(String[] args)
+    {
+        List<File> sceneFiles = new ArrayList<>();
+        for (String arg : args)
+        {
+            addSceneFiles(new File(arg), sceneFiles);
+        }
+        int mismatchCount = 0;
+        try {
+            mismatchCount += verify("built-in tooltip scene", StylesheetCache.buildSceneTree(new InputSource(new StringReader(TOOLTIP_SCENE))), true);
+            for (File sceneFile : sceneFiles)
+            {
+                mismatchCount += verify(sceneFile.getPath(), StylesheetCache.buildSceneTree(sceneFile), false);
+            }
+        } catch (Exception e) {
+            System.out.println("*** XhtmlBodyExtractor verification failed: " + e);
+            System.exit(1);
+        }
+        System.out.println("XhtmlBodyExtractor verification: " + (sceneFiles.size() + 1) + " scenes, " + mismatchCount + " mismatches");
+        if (mismatchCount > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    private static void addSceneFiles(File file, List<File> sceneFiles)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                addSceneFiles(child, sceneFiles);
+            }
+        }
+        else if (file.getName().endsWith(".x3d"))
+        {
+            sceneFiles.add(file);
+        }
+    }
+
+    private static int verify(String sceneName, Source sceneTree, boolean expectTooltips) throws Exception
+    {
+        StringWriter documentWriter = new StringWriter();
+        newListingTransformer().transform(sceneTree, new StreamResult(documentWriter));
+        String document = documentWriter.toString();
+        String expected = document.substring(document.indexOf(BODY_START_TAG) + BODY_START_TAG.length(), document.indexOf(BODY_END_TAG));
+
+        StringWriter listingWriter = new StringWriter();
+        XhtmlBodyExtractor xhtmlBodyExtractor = new XhtmlBodyExtractor(listingWriter);
+        newListingTransformer().transform(sceneTree, xhtmlBodyExtractor.newResult());
+        String listing = listingWriter.toString();
+
+        boolean matches = listing.equals(expected) && xhtmlBodyExtractor.isBodyCompleted();
+        if (expectTooltips && !listing.contains("<span title="))
+        {
+            System.out.println("*** " + sceneName + ": listing has no tooltips, scene does not exercise disable-output-escaping");
+            matches = false;
+        }
+        System.out.println((matches ? "identical " : "*** DIFFERS ") + sceneName + " (" + expected.length() + " characters)");
+        return matches ? 0 : 1;
+    }
+
+    private static Transformer newListingTransformer() throws Exception
+    {
+        Transformer transformer = StylesheetCache.newTransformer("X3dToXhtml.xslt");
+        transformer.setParameter("baseUrlAvailable", "false"); // as in Validator
+        return transformer;
+    }
+}
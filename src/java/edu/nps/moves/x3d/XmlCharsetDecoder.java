@@ -0,0 +1,192 @@
+/*
+ * Filename:     XmlCharsetDecoder.java
+ * Created:      17 OCT 2026
+ * Description:  Detect XML document encoding from byte order mark or XML declaration and decode scene bytes once
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package edu.nps.moves.x3d;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decodes XML scene bytes using the encoding the document itself declares, following
+ * the autodetection rules of XML 1.0 Appendix F: a byte order mark if present,
+ * otherwise the byte pattern of "&lt;?xml" together with the encoding named in the XML
+ * declaration, otherwise UTF-8.  The platform default charset is never used, so that
+ * results do not depend on server configuration and UTF-16 scenes decode correctly.
+ *
+ * A byte order mark is not part of the decoded text.  Malformed bytes are replaced
+ * rather than rejected, since well-formedness checking reports them separately.
+ * Decoders are reused per thread.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public final class XmlCharsetDecoder
+{
+    /** XML declaration is always short, no need to look further */
+    private static final int DECLARATION_SCAN_LIMIT = 1024;
+
+    private static final Pattern ENCODING_PATTERN = Pattern.compile("encoding\\s*=\\s*[\"']([A-Za-z][A-Za-z0-9._\\-]*)[\"']");
+
+    private static final ThreadLocal<Map<Charset, CharsetDecoder>> decoders = ThreadLocal.withInitial(HashMap::new);
+
+    private XmlCharsetDecoder()
+    {
+        // static utility class, no instances
+    }
+
+    /**
+     * Detect document encoding without changing buffer position.
+     *
+     * @param bytes document bytes from current position
+     * @return detected charset, UTF-8 if nothing else is indicated
+     */
+    public static Charset detectCharset(ByteBuffer bytes)
+    {
+        int b0 = byteAt(bytes, 0), b1 = byteAt(bytes, 1), b2 = byteAt(bytes, 2), b3 = byteAt(bytes, 3);
+        if ((b0 == 0xEF) && (b1 == 0xBB) && (b2 == 0xBF))
+            return StandardCharsets.UTF_8;
+        if ((b0 == 0xFE) && (b1 == 0xFF))
+            return StandardCharsets.UTF_16BE;
+        if ((b0 == 0xFF) && (b1 == 0xFE))
+            return StandardCharsets.UTF_16LE;
+        if ((b0 == 0x00) && (b1 == 0x3C) && (b2 == 0x00) && (b3 == 0x3F))
+            return StandardCharsets.UTF_16BE;
+        if ((b0 == 0x3C) && (b1 == 0x00) && (b2 == 0x3F) && (b3 == 0x00))
+            return StandardCharsets.UTF_16LE;
+        if ((b0 == 0x3C) && (b1 == 0x3F) && (b2 == 0x78) && (b3 == 0x6D)) // <?xm in any ASCII-compatible encoding
+        {
+            Charset declaredCharset = getDeclaredCharset(bytes);
+            if (declaredCharset != null)
+                return declaredCharset;
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * @param bytes document bytes from current position
+     * @return length in bytes of byte order mark, or 0 if none
+     */
+    public static int getByteOrderMarkLength(ByteBuffer bytes)
+    {
+        int b0 = byteAt(bytes, 0), b1 = byteAt(bytes, 1), b2 = byteAt(bytes, 2);
+        if ((b0 == 0xEF) && (b1 == 0xBB) && (b2 == 0xBF))
+            return 3;
+        if (((b0 == 0xFE) && (b1 == 0xFF)) || ((b0 == 0xFF) && (b1 == 0xFE)))
+            return 2;
+        return 0;
+    }
+
+    /**
+     * Decode document bytes in their detected encoding, without any byte order mark.
+     * Buffer position is unchanged.
+     *
+     * @param bytes document bytes from current position
+     * @return newly decoded characters, positioned at start
+     */
+    public static CharBuffer decode(ByteBuffer bytes)
+    {
+        return decode(bytes, detectCharset(bytes));
+    }
+
+    /**
+     * Decode document bytes in a given encoding, without any byte order mark.
+     * Buffer position is unchanged.
+     *
+     * @param bytes document bytes from current position
+     * @param charset encoding of bytes
+     * @return newly decoded characters, positioned at start
+     */
+    public static CharBuffer decode(ByteBuffer bytes, Charset charset)
+    {
+        ByteBuffer content = bytes.duplicate();
+        content.position(content.position() + getByteOrderMarkLength(content));
+        CharsetDecoder decoder = decoders.get().computeIfAbsent(charset, XmlCharsetDecoder::newDecoder);
+        try {
+            return decoder.decode(content); // resets decoder first, so reuse is safe
+        } catch (CharacterCodingException cce) {
+            throw new IllegalStateException("decoder configured to replace malformed input", cce); // not reached
+        }
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset)
+    {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** read encoding pseudo-attribute of XML declaration, which is ASCII in any ASCII-compatible encoding */
+    private static Charset getDeclaredCharset(ByteBuffer bytes)
+    {
+        StringBuilder declaration = new StringBuilder();
+        int limit = Math.min(bytes.remaining(), DECLARATION_SCAN_LIMIT);
+        for (int i = 0; i < limit; i++)
+        {
+            char c = (char) byteAt(bytes, i);
+            declaration.append(c);
+            if ((c == '>') && (declaration.length() > 1) && (declaration.charAt(declaration.length() - 2) == '?'))
+                break;
+        }
+        Matcher matcher = ENCODING_PATTERN.matcher(declaration);
+        if (!matcher.find())
+            return null;
+        try {
+            Charset declaredCharset = Charset.forName(matcher.group(1));
+            if (declaredCharset.name().startsWith("UTF-16") || declaredCharset.name().startsWith("UTF-32"))
+                return null; // contradicts single-byte <?xm already seen, so declaration cannot be trusted
+            return declaredCharset;
+        } catch (IllegalArgumentException e) {
+            return null; // unsupported or misspelled encoding name, well-formedness check reports it
+        }
+    }
+
+    private static int byteAt(ByteBuffer bytes, int offset)
+    {
+        int index = bytes.position() + offset;
+        return (index < bytes.limit()) ? (bytes.get(index) & 0xFF) : -1;
+    }
+}
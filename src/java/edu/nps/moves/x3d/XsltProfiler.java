@@ -0,0 +1,351 @@
+/*
+ * Filename:     XsltProfiler.java
+ * Created:      17 OCT 2026
+ * Description:  Template-level timing of validation stylesheets via Saxon trace events
+ *
+ * Copyright (c) 1995-2026 held by the author(s).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * Neither the names of the Naval Postgraduate School (NPS)
+ *       Modeling Virtual Environments and Simulation (MOVES) Institute
+ *       (http://www.nps.edu and http://www.MovesInstitute.org)
+ *       nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package edu.nps.moves.x3d;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.sf.saxon.Controller;
+import net.sf.saxon.expr.XPathContext;
+import net.sf.saxon.lib.TraceListener;
+import net.sf.saxon.om.Item;
+import net.sf.saxon.om.StandardNames;
+import net.sf.saxon.om.StructuredQName;
+import net.sf.saxon.trace.InstructionInfo;
+import net.sf.saxon.trans.Mode;
+
+/**
+ * Saxon TraceListener that aggregates inclusive time, exclusive time and invocation
+ * counts per template and per mode, then reports a hotspot table sorted by exclusive
+ * time when the transformation completes.  Only meaningful for stylesheets compiled
+ * with tracing enabled, see {@link StylesheetCache#newProfilingTransformer(String)}.
+ *
+ * Inclusive time is counted once for recursive activations, so that a template
+ * calling itself is not charged multiple times for the same interval.
+ *
+ * @version	$Id$
+ * @since $Date$
+ */
+public class XsltProfiler implements TraceListener
+{
+    /** accumulated timings for one template or mode */
+    public static class Hotspot
+    {
+        private final String name;
+        private long invocationCount = 0;
+        private long inclusiveNanos  = 0;
+        private long exclusiveNanos  = 0;
+        private int  activeDepth     = 0; // recursion depth, inclusive time only counted for outermost activation
+
+        Hotspot(String name)
+        {
+            this.name = name;
+        }
+
+        /** @return template or mode description */
+        public String getName()            { return name; }
+        /** @return number of activations */
+        public long   getInvocationCount() { return invocationCount; }
+        /** @return time including called templates, in nanoseconds */
+        public long   getInclusiveNanos()  { return inclusiveNanos; }
+        /** @return time excluding called templates, in nanoseconds */
+        public long   getExclusiveNanos()  { return exclusiveNanos; }
+    }
+
+    /** one active template activation */
+    private static class Frame
+    {
+        final Hotspot template;
+        final Hotspot mode;
+        final long    startNanos;
+        long          childNanos = 0;
+
+        Frame(Hotspot template, Hotspot mode, long startNanos)
+        {
+            this.template   = template;
+            this.mode       = mode;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private final String stylesheetName;
+    private final Map<String, Hotspot> templateHotspots = new HashMap<>();
+    private final Map<String, Hotspot> modeHotspots     = new HashMap<>();
+    private final Deque<Frame>         frameStack       = new ArrayDeque<>();
+    private long transformStartNanos = 0;
+    private long transformNanos      = 0;
+    private PrintStream outputDestination = System.out;
+
+    /**
+     * @param stylesheetName name of stylesheet being profiled, used in reports
+     */
+    public XsltProfiler(String stylesheetName)
+    {
+        this.stylesheetName = stylesheetName;
+    }
+
+    /**
+     * @param outputDestination stream receiving reports when transformation completes, console by default
+     */
+    @Override
+    public void setOutputDestination(PrintStream outputDestination)
+    {
+        this.outputDestination = (outputDestination == null) ? System.out : outputDestination;
+    }
+
+    @Override
+    public void open(Controller controller)
+    {
+        transformStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void close()
+    {
+        transformNanos = System.nanoTime() - transformStartNanos;
+        outputDestination.println(toText());
+        outputDestination.println(toJson());
+    }
+
+    @Override
+    public void enter(InstructionInfo instruction, XPathContext context)
+    {
+        if (instruction.getConstructType() != StandardNames.XSL_TEMPLATE)
+        {
+            return;
+        }
+        Hotspot template = getHotspot(templateHotspots, describeTemplate(instruction));
+        Hotspot mode     = getHotspot(modeHotspots,     describeMode(context));
+        template.invocationCount++;
+        template.activeDepth++;
+        mode.invocationCount++;
+        mode.activeDepth++;
+        frameStack.push(new Frame(template, mode, System.nanoTime()));
+    }
+
+    @Override
+    public void leave(InstructionInfo instruction)
+    {
+        if ((instruction.getConstructType() != StandardNames.XSL_TEMPLATE) || frameStack.isEmpty())
+        {
+            return;
+        }
+        Frame frame = frameStack.pop();
+        long inclusiveNanos = System.nanoTime() - frame.startNanos;
+        long exclusiveNanos = inclusiveNanos - frame.childNanos;
+
+        frame.template.exclusiveNanos += exclusiveNanos;
+        frame.mode.exclusiveNanos     += exclusiveNanos;
+        if (--frame.template.activeDepth == 0)
+        {
+            frame.template.inclusiveNanos += inclusiveNanos;
+        }
+        if (--frame.mode.activeDepth == 0)
+        {
+            frame.mode.inclusiveNanos += inclusiveNanos;
+        }
+        Frame parent = frameStack.peek();
+        if (parent != null)
+        {
+            parent.childNanos += inclusiveNanos;
+        }
+    }
+
+    @Override
+    public void startCurrentItem(Item currentItem)
+    {
+    }
+
+    @Override
+    public void endCurrentItem(Item currentItem)
+    {
+    }
+
+    private static Hotspot getHotspot(Map<String, Hotspot> hotspots, String name)
+    {
+        Hotspot hotspot = hotspots.get(name);
+        if (hotspot == null)
+        {
+            hotspot = new Hotspot(name);
+            hotspots.put(name, hotspot);
+        }
+        return hotspot;
+    }
+
+    private static String describeTemplate(InstructionInfo instruction)
+    {
+        StringBuilder description = new StringBuilder();
+        StructuredQName templateName = instruction.getObjectName();
+        if (templateName != null)
+        {
+            description.append("name=\"").append(templateName.getDisplayName()).append("\"");
+        }
+        else
+        {
+            description.append("match=\"").append(instruction.getProperty("match")).append("\"");
+        }
+        String systemId = instruction.getSystemId();
+        if (systemId != null)
+        {
+            description.append(" (").append(systemId.substring(systemId.lastIndexOf('/') + 1))
+                       .append(" line ").append(instruction.getLineNumber()).append(")");
+        }
+        return description.toString();
+    }
+
+    private static String describeMode(XPathContext context)
+    {
+        Mode mode = context.getCurrentMode();
+        if ((mode == null) || mode.isDefaultMode() || (mode.getModeName() == null))
+        {
+            return "#default";
+        }
+        return mode.getModeName().getDisplayName();
+    }
+
+    /**
+     * @param hotspots collection to sort
+     * @return hotspots sorted by descending exclusive time
+     */
+    private static List<Hotspot> sortByExclusiveTime(Map<String, Hotspot> hotspots)
+    {
+        List<Hotspot> sortedHotspots = new ArrayList<>(hotspots.values());
+        sortedHotspots.sort((first, second) -> Long.compare(second.exclusiveNanos, first.exclusiveNanos));
+        return sortedHotspots;
+    }
+
+    /**
+     * @return templates sorted by descending exclusive time
+     */
+    public List<Hotspot> getTemplateHotspots()
+    {
+        return sortByExclusiveTime(templateHotspots);
+    }
+
+    /**
+     * @return modes sorted by descending exclusive time
+     */
+    public List<Hotspot> getModeHotspots()
+    {
+        return sortByExclusiveTime(modeHotspots);
+    }
+
+    /**
+     * @return hotspot tables as plain text, suitable for console log
+     */
+    public String toText()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("XsltProfiler ").append(stylesheetName).append(": total ")
+          .append(transformNanos / 1000000).append(" msec\n");
+        appendTextTable(sb, "template", getTemplateHotspots());
+        appendTextTable(sb, "mode",     getModeHotspots());
+        return sb.toString();
+    }
+
+    private static void appendTextTable(StringBuilder sb, String heading, List<Hotspot> hotspots)
+    {
+        sb.append(String.format("%12s %12s %10s  %s%n", "excl msec", "incl msec", "count", heading));
+        for (Hotspot hotspot : hotspots)
+        {
+            sb.append(String.format("%12.3f %12.3f %10d  %s%n",
+                    hotspot.exclusiveNanos / 1000000.0, hotspot.inclusiveNanos / 1000000.0,
+                    hotspot.invocationCount, hotspot.name));
+        }
+    }
+
+    /**
+     * @return hotspot tables as JSON object, suitable for external analysis
+     */
+    public String toJson()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"stylesheet\":\"").append(escapeJson(stylesheetName)).append("\",");
+        sb.append("\"totalNanos\":").append(transformNanos).append(",");
+        sb.append("\"templates\":");
+        appendJsonArray(sb, getTemplateHotspots());
+        sb.append(",\"modes\":");
+        appendJsonArray(sb, getModeHotspots());
+        sb.append("}");
+        return sb.toString();
+    }
+
+    private static void appendJsonArray(StringBuilder sb, List<Hotspot> hotspots)
+    {
+        sb.append("[");
+        for (int i = 0; i < hotspots.size(); i++)
+        {
+            Hotspot hotspot = hotspots.get(i);
+            if (i > 0)
+            {
+                sb.append(",");
+            }
+            sb.append("{\"name\":\"").append(escapeJson(hotspot.name)).append("\",")
+              .append("\"count\":").append(hotspot.invocationCount).append(",")
+              .append("\"inclusiveNanos\":").append(hotspot.inclusiveNanos).append(",")
+              .append("\"exclusiveNanos\":").append(hotspot.exclusiveNanos).append("}");
+        }
+        sb.append("]");
+    }
+
+    private static String escapeJson(String s)
+    {
+        StringBuilder escaped = new StringBuilder(s.length());
+        for (char c : s.toCharArray())
+        {
+            switch (c)
+            {
+                case '"':  escaped.append("\\\""); break;
+                case '\\': escaped.append("\\\\"); break;
+                case '\n': escaped.append("\\n");  break;
+                case '\r': escaped.append("\\r");  break;
+                case '\t': escaped.append("\\t");  break;
+                default:
+                    if (c < 0x20)
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    else
+                        escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}